@@ -0,0 +1,119 @@
+package fft;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory-mapped playback of a file written by OceanBake. Frames are handed out as read-only views
+ * of the mapping, ready for GLTexture.setData with GL_HALF_FLOAT (displacement) and GL_BYTE
+ * (normals), so playing a frame costs two texture uploads.
+ */
+public class BakedOcean {
+
+    private int resolution;
+    private int cascades;
+    private int frames;
+    private float period;
+    private float[] sizes;
+
+    private ByteBuffer[] displacements;
+    private ByteBuffer[] normals;
+
+    private BakedOcean() {
+    }
+
+    /**
+     * Returns null if the file is missing or not a bake.
+     */
+    public static BakedOcean open(File file) {
+        if(!file.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, OceanBake.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getInt() != OceanBake.MAGIC) {
+                return null;
+            }
+
+            BakedOcean baked = new BakedOcean();
+            baked.resolution = header.getInt();
+            baked.cascades = header.getInt();
+            baked.frames = header.getInt();
+            baked.period = header.getFloat();
+            if(baked.cascades < 1 || baked.cascades > OceanBake.MAX_CASCADES || baked.frames < 1) {
+                return null;
+            }
+            baked.sizes = new float[baked.cascades];
+            for(int c=0; c<baked.cascades; ++c) {
+                baked.sizes[c] = header.getFloat();
+            }
+
+            long frameSize = OceanBake.getFrameSize(baked.resolution, baked.cascades);
+            int displacementSize = OceanBake.getDisplacementSize(baked.resolution, baked.cascades);
+            if(raf.length() != OceanBake.HEADER_SIZE + frameSize * baked.frames) {
+                return null;
+            }
+
+            // One mapping per frame keeps bakes above 2 GB addressable
+            baked.displacements = new ByteBuffer[baked.frames];
+            baked.normals = new ByteBuffer[baked.frames];
+            for(int f=0; f<baked.frames; ++f) {
+                ByteBuffer frame = channel.map(FileChannel.MapMode.READ_ONLY, OceanBake.HEADER_SIZE + frameSize * f, frameSize);
+                frame.limit(displacementSize);
+                baked.displacements[f] = frame.slice();
+                frame.limit((int) frameSize).position(displacementSize);
+                baked.normals[f] = frame.slice();
+            }
+            return baked;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Frame shown at the given simulation time, wrapping around every period seconds.
+     */
+    public int getFrame(float time) {
+        float t = time % period;
+        if(t < 0.0f) {
+            t += period;
+        }
+        return Math.min((int)(t / period * frames), frames - 1);
+    }
+
+    public ByteBuffer getDisplacement(int frame) {
+        return displacements[frame];
+    }
+
+    public ByteBuffer getNormals(int frame) {
+        return normals[frame];
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int getCascades() {
+        return cascades;
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public float getPeriod() {
+        return period;
+    }
+
+    public float[] getSizes() {
+        return sizes;
+    }
+}
@@ -0,0 +1,63 @@
+package fft;
+
+import com.jogamp.common.nio.Buffers;
+import opengl.GLManager;
+import opengl.GLSampler;
+import opengl.GLTexture;
+
+import java.nio.FloatBuffer;
+
+/**
+ * RGBA32F lookup of the Stockham butterflies: resolution texels wide, one row per stage, each
+ * texel holding (even index, odd index, twiddle re, twiddle im). Only rebuilt when the
+ * resolution changes.
+ */
+public class ButterflyTexture {
+
+    private GLManager manager;
+    private GLSampler sampler;
+    private GLTexture texture;
+    private int resolution;
+
+    public ButterflyTexture(GLManager manager, GLSampler sampler) {
+        this.manager = manager;
+        this.sampler = sampler;
+        this.resolution = 0;
+    }
+
+    public void update(int resolution) {
+        if(resolution == this.resolution) {
+            return;
+        }
+        this.resolution = resolution;
+
+        StockhamFFT fft = new StockhamFFT(resolution);
+        int stages = fft.getStages();
+        FloatBuffer data = Buffers.newDirectFloatBuffer(resolution * stages * 4);
+        for(int s=0; s<stages; ++s) {
+            int[] even = fft.getEvenIndices(s);
+            float[] twiddleRe = fft.getTwiddleRe(s);
+            float[] twiddleIm = fft.getTwiddleIm(s);
+            for(int i=0; i<resolution; ++i) {
+                data.put(even[i]).put(even[i] + resolution / 2).put(twiddleRe[i]).put(twiddleIm[i]);
+            }
+        }
+        data.rewind();
+
+        if(texture == null) {
+            texture = manager.createTexture32f(resolution, stages, data);
+            texture.setSampler(sampler);
+        }
+        else {
+            texture.init32f(resolution, stages, data);
+        }
+    }
+
+    public GLTexture getTexture() {
+        return texture;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+}
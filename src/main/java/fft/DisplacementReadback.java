@@ -0,0 +1,238 @@
+package fft;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL4;
+import opengl.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous readback of a displacement texture (all layers of one mip level) through a ring
+ * of pixel buffers guarded by fences. update() is called once per rendered frame: it collects
+ * the readbacks whose fence has signaled and issues a new one into a free slot, and never waits
+ * for the GPU. When all slots are in flight the frame is skipped and counted as dropped.
+ *
+ * Completed frames are published to other threads through acquireLatest(). The data of a frame
+ * is never written again while it is acquired, release() hands its buffer back for reuse.
+ */
+public class DisplacementReadback {
+
+    private static final int RING = 3;
+
+    private GLTexture texture;
+    private int level;
+    private int floats;
+
+    private GLPixelBuffer[] pixelBuffers;
+    private GLFence[] fences;
+    private long[] issuedFrames;
+    private long[] issuedTimes;
+    private int next;
+
+    // Buffers of released frames, new ones are allocated while readers hold all of them
+    private ConcurrentLinkedQueue<FloatBuffer> freeResults;
+    private volatile Frame latest;
+
+    private long frame;
+    private long completed;
+    private long dropped;
+    private long totalLatency;
+    private long maxLatency;
+
+    /**
+     * Level is the mip level to read, e.g. 2 for a quarter of the resolution per axis. Mip levels
+     * above 0 are regenerated from level 0 on every readback.
+     */
+    public DisplacementReadback(GLManager manager, GLTexture texture, int layers, int level) {
+        this.texture = texture;
+        this.level = level;
+        int width = Math.max(texture.getWidth() >> level, 1);
+        int height = Math.max(texture.getHeight() >> level, 1);
+        this.floats = width * height * 4 * layers;
+
+        this.pixelBuffers = new GLPixelBuffer[RING];
+        this.fences = new GLFence[RING];
+        this.issuedFrames = new long[RING];
+        this.issuedTimes = new long[RING];
+        for(int i=0; i<RING; ++i) {
+            pixelBuffers[i] = manager.createPixelBuffer(floats * 4L);
+            fences[i] = manager.createFence();
+        }
+
+        this.freeResults = new ConcurrentLinkedQueue<>();
+    }
+
+    public void update() {
+        collect();
+        issue();
+        frame++;
+    }
+
+    // Oldest first, so frames are published in order
+    private void collect() {
+        for(int n=0; n<RING; ++n) {
+            int slot = (next + n) % RING;
+            if(!fences[slot].isPending()) {
+                continue;
+            }
+            if(!fences[slot].isSignaled()) {
+                break;
+            }
+
+            GLPixelBuffer pixelBuffer = pixelBuffers[slot];
+            FloatBuffer result = freeResults.poll();
+            if(result == null) {
+                result = Buffers.newDirectFloatBuffer(floats);
+            }
+
+            pixelBuffer.bind();
+            ByteBuffer data = pixelBuffer.map();
+            result.clear();
+            result.put(data.order(ByteOrder.nativeOrder()).asFloatBuffer());
+            result.flip();
+            pixelBuffer.unmap();
+            pixelBuffer.unbind();
+            fences[slot].reset();
+
+            long latency = frame - issuedFrames[slot];
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            completed++;
+
+            Frame previous = latest;
+            latest = new Frame(result, issuedFrames[slot], issuedTimes[slot], freeResults);
+            if(previous != null) {
+                previous.release();
+            }
+        }
+    }
+
+    private void issue() {
+        GL4 gl = GLUtils.getGL4();
+
+        if(fences[next].isPending()) {
+            dropped++;
+            return;
+        }
+
+        // The displacement may have been written by the compute transform
+        gl.glMemoryBarrier(GL4.GL_TEXTURE_UPDATE_BARRIER_BIT | GL4.GL_PIXEL_BUFFER_BARRIER_BIT);
+        if(level > 0) {
+            texture.generateMipmaps();
+        }
+
+        pixelBuffers[next].bind();
+        texture.getData(level, 0);
+        pixelBuffers[next].unbind();
+        fences[next].insert();
+
+        issuedFrames[next] = frame;
+        issuedTimes[next] = System.nanoTime();
+        next = (next + 1) % RING;
+    }
+
+    /**
+     * Newest completed frame or null if none has completed yet. Every acquired frame must be
+     * released once, its data is not written before that.
+     */
+    public Frame acquireLatest() {
+        while(true) {
+            Frame frame = latest;
+            if(frame == null || frame.retain()) {
+                return frame;
+            }
+            // Released by update() in the meantime, a newer frame is published already
+        }
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Frames between issuing a readback and collecting it.
+     */
+    public double getAverageLatency() {
+        return (completed > 0 ? totalLatency / (double) completed : 0.0);
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    public void resetMetrics() {
+        completed = 0;
+        dropped = 0;
+        totalLatency = 0;
+        maxLatency = 0;
+    }
+
+    public static class Frame {
+
+        private FloatBuffer data;
+        private long frame;
+        private long timestamp;
+        private ConcurrentLinkedQueue<FloatBuffer> freeData;
+        // One for DisplacementReadback.latest and one per acquireLatest()
+        private AtomicInteger references;
+
+        private Frame(FloatBuffer data, long frame, long timestamp, ConcurrentLinkedQueue<FloatBuffer> freeData) {
+            this.data = data;
+            this.frame = frame;
+            this.timestamp = timestamp;
+            this.freeData = freeData;
+            this.references = new AtomicInteger(1);
+        }
+
+        private boolean retain() {
+            while(true) {
+                int count = references.get();
+                if(count == 0) {
+                    return false;
+                }
+                if(references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void release() {
+            int count = references.decrementAndGet();
+            if(count == 0) {
+                freeData.offer(data);
+            }
+            else if(count < 0) {
+                throw new IllegalStateException("Frame " + frame + " released more often than acquired");
+            }
+        }
+
+        /**
+         * RGBA displacement texels, layer after layer. Only valid until release().
+         */
+        public FloatBuffer getData() {
+            return data.asReadOnlyBuffer();
+        }
+
+        /**
+         * Number of the update() call that issued the readback.
+         */
+        public long getFrame() {
+            return frame;
+        }
+
+        /**
+         * System.nanoTime() when the readback was issued.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fft;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Max and RMS error of both transform targets with -Dfft.precision=half against the 32-bit
+ * pipeline, per OceanSimulation cascade. Runs headless on the CPU engine, which rounds every value the
+ * GPU stores between passes exactly like a 16F render target does; the shader arithmetic itself
+ * stays 32-bit on both sides.
+ *
+ * Usage: FFTPrecisionReport [resolution] [time]
+ */
+public class FFTPrecisionReport {
+
+    private static final float[] SIZES = { 250.0f, 50.0f, 10.0f };
+    private static final Vector2fc WIND = new Vector2f(10.0f, 10.0f);
+    // Displacement target, then derivative target
+    private static final String[] CHANNELS = { "Dx", "height", "Dz", "dDx/dz", "dh/dx", "dh/dz", "dDx/dx", "dDz/dz" };
+
+    public static void main(String[] args) {
+        int resolution = (args.length > 0 ? Integer.parseInt(args[0]) : 512);
+        float time = (args.length > 1 ? Float.parseFloat(args[1]) : 100.0f);
+
+        OceanSimulation.Precision[] precisions = OceanSimulation.Precision.values();
+        for(OceanSimulation.Precision precision : precisions) {
+            System.out.printf("%-5s %5.1f MB per %d^2 RGBA target%n", precision, precision.getBytesPerTexel(4) * (double) resolution * resolution / (1024.0 * 1024.0), resolution);
+        }
+        System.out.println();
+        System.out.printf("%4s %7s %-9s %-7s %12s %12s %12s%n", "res", "size", "transform", "channel", "max |ref|", "max error", "rms error");
+
+        for(int c=0; c<SIZES.length; ++c) {
+            float bandStart = OceanSimulation.getBandStart(SIZES, SIZES.length, c);
+            float bandEnd = OceanSimulation.getBandStart(SIZES, SIZES.length, c + 1);
+
+            OceanFFT reference = new OceanFFT(resolution, SIZES[c], WIND, 1.0f, 12345 + c, bandStart, bandEnd);
+            reference.update(time);
+            float[][] expected = { toArray(reference.getDisplacement()), toArray(reference.getDerivatives()) };
+
+            for(int perStage=0; perStage<2; ++perStage) {
+                OceanFFT half = new OceanFFT(resolution, SIZES[c], WIND, 1.0f, 12345 + c, bandStart, bandEnd);
+                half.setHalfStorage(true, perStage == 1);
+                half.update(time);
+                float[][] actual = { toArray(half.getDisplacement()), toArray(half.getDerivatives()) };
+
+                for(int channel=0; channel<CHANNELS.length; ++channel) {
+                    double maxValue = 0.0;
+                    double maxError = 0.0;
+                    double sumSquared = 0.0;
+                    float[] expectedTarget = expected[channel / 4];
+                    float[] actualTarget = actual[channel / 4];
+                    for(int i=channel % 4; i<expectedTarget.length; i+=4) {
+                        double error = Math.abs(actualTarget[i] - expectedTarget[i]);
+                        maxValue = Math.max(maxValue, Math.abs(expectedTarget[i]));
+                        maxError = Math.max(maxError, error);
+                        sumSquared += error * error;
+                    }
+                    double rms = Math.sqrt(sumSquared / (expectedTarget.length / 4));
+                    System.out.printf("%4d %7.1f %-9s %-7s %12.4e %12.4e %12.4e%n", resolution, SIZES[c],
+                            (perStage == 1 ? "fragment" : "compute"), CHANNELS[channel], maxValue, maxError, rms);
+                }
+            }
+        }
+    }
+
+    private static float[] toArray(FloatBuffer buffer) {
+        float[] data = new float[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+}
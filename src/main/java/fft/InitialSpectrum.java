@@ -0,0 +1,151 @@
+package fft;
+
+import com.jogamp.common.nio.Buffers;
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * h0(k) = (xi_r + i xi_i) * amplitude(k) for every wave vector of a patch, with the amplitude of
+ * OceanFFT.initialAmplitude and independent standard normal draws xi per texel. The draws come
+ * from a counter-based generator (SplitMix64 over seed and texel index), so rows can be generated
+ * on any thread in any order and the result only depends on the seed.
+ *
+ * The output is laid out like the initial spectrum texture: RGBA texels of (Re h0, Im h0, 0, 0).
+ */
+public class InitialSpectrum {
+
+    private static final int GRAIN = 16;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private int resolution;
+    private float size;
+    private Vector2fc wind;
+    private long seed;
+    private float bandStart;
+    private float bandEnd;
+
+    public InitialSpectrum(int resolution, float size, Vector2fc wind, long seed) {
+        this(resolution, size, wind, seed, 0.0f, Float.MAX_VALUE);
+    }
+
+    /**
+     * Only keeps the wavenumbers in [bandStart, bandEnd), like a cascade in OceanSimulation.
+     */
+    public InitialSpectrum(int resolution, float size, Vector2fc wind, long seed, float bandStart, float bandEnd) {
+        this.resolution = resolution;
+        this.size = size;
+        this.wind = new Vector2f(wind);
+        this.seed = seed;
+        this.bandStart = bandStart;
+        this.bandEnd = bandEnd;
+    }
+
+    public float[] generate() {
+        float[] data = new float[resolution * resolution * 4];
+        POOL.invoke(new RowTask(data, 0, resolution));
+        return data;
+    }
+
+    /**
+     * Loads the spectrum from the cache or generates and stores it. The cache may be null.
+     */
+    public FloatBuffer get(SpectrumCache cache) {
+        FloatBuffer buffer = (cache != null ? cache.load(this) : null);
+        if(buffer != null) {
+            return buffer;
+        }
+
+        float[] spectrum = generate();
+        buffer = (cache != null ? cache.store(this, spectrum) : null);
+        return (buffer != null ? buffer : Buffers.newDirectFloatBuffer(spectrum));
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public Vector2fc getWind() {
+        return wind;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public float getBandStart() {
+        return bandStart;
+    }
+
+    public float getBandEnd() {
+        return bandEnd;
+    }
+
+    private void generateRows(float[] data, int start, int end) {
+        long stream = mix(seed);
+        for(int y=start; y<end; ++y) {
+            float kz = waveNumber(y);
+            for(int x=0; x<resolution; ++x) {
+                float kx = waveNumber(x);
+                int i = y * resolution + x;
+                float k = (float)Math.sqrt(kx * kx + kz * kz);
+                if(k < bandStart || k >= bandEnd) {
+                    continue;
+                }
+                float amplitude = OceanFFT.initialAmplitude(kx, kz, wind, size);
+
+                // Box-Muller on the texel's two uniforms, u1 in (0, 1]
+                long state = stream + GOLDEN_GAMMA * (2L * i + 1);
+                double u1 = 1.0 - (mix(state) >>> 11) * 0x1.0p-53;
+                double u2 = (mix(state + GOLDEN_GAMMA) >>> 11) * 0x1.0p-53;
+                double radius = Math.sqrt(-2.0 * Math.log(u1));
+                double theta = 2.0 * Math.PI * u2;
+
+                data[i * 4] = (float)(radius * Math.cos(theta)) * amplitude;
+                data[i * 4 + 1] = (float)(radius * Math.sin(theta)) * amplitude;
+            }
+        }
+    }
+
+    private float waveNumber(int index) {
+        int n = (index < resolution / 2 ? index : index - resolution);
+        return (float)(2.0 * Math.PI * n / size);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private class RowTask extends RecursiveAction {
+
+        private float[] data;
+        private int start;
+        private int end;
+
+        public RowTask(float[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start > GRAIN) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new RowTask(data, start, mid), new RowTask(data, mid, end));
+                return;
+            }
+            generateRows(data, start, end);
+        }
+    }
+}
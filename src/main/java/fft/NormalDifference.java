@@ -0,0 +1,99 @@
+package fft;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Image difference between the spectral normals (default) and the normals of the old
+ * normal.fs.glsl pass (-Dfft.normals=difference), per OceanSimulation cascade on the CPU engine.
+ * Prints the angle between both normal maps and, with an output directory, writes a heat map
+ * per cascade (black = equal, white = maxDegrees or more).
+ *
+ * Exits with status 1 if the mean angle of a cascade exceeds maxDegrees, so it can be used as
+ * a check after changes to either normal path.
+ *
+ * Usage: NormalDifference [resolution] [time] [maxDegrees] [outputDirectory]
+ */
+public class NormalDifference {
+
+    private static final float[] SIZES = { 250.0f, 50.0f, 10.0f };
+    private static final Vector2fc WIND = new Vector2f(10.0f, 10.0f);
+
+    public static void main(String[] args) throws IOException {
+        int resolution = (args.length > 0 ? Integer.parseInt(args[0]) : 256);
+        float time = (args.length > 1 ? Float.parseFloat(args[1]) : 100.0f);
+        float maxDegrees = (args.length > 2 ? Float.parseFloat(args[2]) : 5.0f);
+        File outputDirectory = (args.length > 3 ? new File(args[3]) : null);
+        if(outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Could not create " + outputDirectory);
+        }
+
+        System.out.printf("%4s %7s %10s %10s %10s %10s%n", "res", "size", "mean deg", "p99 deg", "max deg", "> 1 deg");
+
+        boolean passed = true;
+        for(int c=0; c<SIZES.length; ++c) {
+            float bandStart = OceanSimulation.getBandStart(SIZES, SIZES.length, c);
+            float bandEnd = OceanSimulation.getBandStart(SIZES, SIZES.length, c + 1);
+
+            OceanFFT spectral = new OceanFFT(resolution, SIZES[c], WIND, 1.0f, 12345 + c, bandStart, bandEnd);
+            spectral.update(time);
+            OceanFFT difference = new OceanFFT(resolution, SIZES[c], WIND, 1.0f, 12345 + c, bandStart, bandEnd);
+            difference.setSpectralNormals(false);
+            difference.update(time);
+
+            float[] angles = getAngles(spectral.getNormals(), difference.getNormals());
+            double sum = 0.0;
+            int above = 0;
+            for(float angle : angles) {
+                sum += angle;
+                if(angle > 1.0f) {
+                    above++;
+                }
+            }
+            double mean = sum / angles.length;
+            float[] sorted = angles.clone();
+            Arrays.sort(sorted);
+
+            System.out.printf("%4d %7.1f %10.3f %10.3f %10.3f %9.2f%%%n", resolution, SIZES[c], mean,
+                    sorted[(int)(sorted.length * 0.99)], sorted[sorted.length - 1], 100.0 * above / angles.length);
+            passed &= (mean <= maxDegrees);
+
+            if(outputDirectory != null) {
+                File file = new File(outputDirectory, "normal_difference_" + c + ".png");
+                ImageIO.write(toImage(angles, resolution, maxDegrees), "png", file);
+            }
+        }
+
+        System.out.println(passed ? "PASSED" : "FAILED: mean angle above " + maxDegrees + " degrees");
+        if(!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static float[] getAngles(FloatBuffer a, FloatBuffer b) {
+        float[] angles = new float[a.remaining() / 4];
+        for(int i=0; i<angles.length; ++i) {
+            double dot = a.get(i * 4) * b.get(i * 4) + a.get(i * 4 + 1) * b.get(i * 4 + 1) + a.get(i * 4 + 2) * b.get(i * 4 + 2);
+            angles[i] = (float)Math.toDegrees(Math.acos(Math.max(-1.0, Math.min(1.0, dot))));
+        }
+        return angles;
+    }
+
+    private static BufferedImage toImage(float[] angles, int resolution, float maxDegrees) {
+        BufferedImage image = new BufferedImage(resolution, resolution, BufferedImage.TYPE_BYTE_GRAY);
+        for(int y=0; y<resolution; ++y) {
+            for(int x=0; x<resolution; ++x) {
+                int value = Math.round(Math.min(angles[y * resolution + x] / maxDegrees, 1.0f) * 255.0f);
+                image.getRaster().setSample(x, y, 0, value);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,139 @@
+package fft;
+
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import utils.HalfFloat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Offline bake of a looping OceanSimulation ocean for playback through BakedOcean (-Dfft.bake=file).
+ *
+ * All omega(k) are rounded to multiples of 2 pi / period, so frame 0 follows the last frame
+ * seamlessly. The file is little endian: a header of HEADER_SIZE bytes, then per frame the
+ * displacement of all cascades as RGBA16F followed by their normals as signed normalized RGBA8.
+ *
+ * Usage: OceanBake file [resolution] [period] [fps] [cascades]
+ */
+public class OceanBake {
+
+    public static final int MAGIC = 0x4F43424B;
+    public static final int HEADER_SIZE = 64;
+    public static final int MAX_CASCADES = 4;
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.out.println("Usage: OceanBake file [resolution] [period] [fps] [cascades]");
+            return;
+        }
+
+        File file = new File(args[0]);
+        int resolution = (args.length > 1 ? Integer.parseInt(args[1]) : 256);
+        float period = (args.length > 2 ? Float.parseFloat(args[2]) : 10.0f);
+        int fps = (args.length > 3 ? Integer.parseInt(args[3]) : 24);
+        // Same cascades as OceanSimulation
+        float[] allSizes = { 250.0f, 50.0f, 10.0f };
+        int cascades = (args.length > 4 ? Math.max(1, Math.min(Integer.parseInt(args[4]), allSizes.length)) : allSizes.length);
+        float[] sizes = new float[cascades];
+        System.arraycopy(allSizes, 0, sizes, 0, cascades);
+
+        long start = System.nanoTime();
+        bake(file, resolution, sizes, new Vector2f(10.0f, 10.0f), 1.0f, 12345, period, Math.round(period * fps));
+        System.out.printf("Baked %s (%.1f MB) in %.1f s%n", file, file.length() / (1024.0 * 1024.0), (System.nanoTime() - start) / 1.0e9);
+    }
+
+    public static void bake(File file, int resolution, float[] sizes, Vector2fc wind, float choppiness, long seed,
+                            float period, int frames) throws IOException {
+        int cascades = sizes.length;
+        if(cascades < 1 || cascades > MAX_CASCADES) {
+            throw new IllegalArgumentException("Cascades must be between 1 and " + MAX_CASCADES + ": " + cascades);
+        }
+
+        // The CPU engine runs its passes on a fork/join pool, one cascade after the other
+        OceanFFT[] oceans = new OceanFFT[cascades];
+        for(int c=0; c<cascades; ++c) {
+            oceans[c] = new OceanFFT(resolution, sizes[c], wind, choppiness, seed + c,
+                    OceanSimulation.getBandStart(sizes, cascades, c), OceanSimulation.getBandStart(sizes, cascades, c + 1));
+            oceans[c].setLoopPeriod(period);
+        }
+
+        int texels = resolution * resolution;
+        ByteBuffer frame = ByteBuffer.allocateDirect(getFrameSize(resolution, cascades)).order(ByteOrder.LITTLE_ENDIAN);
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(resolution).putInt(cascades).putInt(frames).putFloat(period);
+            for(float size : sizes) {
+                header.putFloat(size);
+            }
+            header.rewind();
+            write(channel, header);
+
+            for(int f=0; f<frames; ++f) {
+                float time = period * f / frames;
+                for(OceanFFT ocean : oceans) {
+                    ocean.update(time);
+                }
+
+                frame.clear();
+                for(OceanFFT ocean : oceans) {
+                    FloatBuffer displacement = ocean.getDisplacement();
+                    for(int i=0; i<texels; ++i) {
+                        frame.putShort(HalfFloat.toHalf(displacement.get(i * 4)));
+                        frame.putShort(HalfFloat.toHalf(displacement.get(i * 4 + 1)));
+                        frame.putShort(HalfFloat.toHalf(displacement.get(i * 4 + 2)));
+                        frame.putShort((short) 0);
+                    }
+                }
+                for(OceanFFT ocean : oceans) {
+                    FloatBuffer normals = ocean.getNormals();
+                    for(int i=0; i<texels; ++i) {
+                        frame.put(toSnorm8(normals.get(i * 4)));
+                        frame.put(toSnorm8(normals.get(i * 4 + 1)));
+                        frame.put(toSnorm8(normals.get(i * 4 + 2)));
+                        frame.put((byte) 127);
+                    }
+                }
+                frame.flip();
+                write(channel, frame);
+
+                if((f + 1) % 24 == 0 || f == frames - 1) {
+                    System.out.println("Baked frame " + (f + 1) + " / " + frames);
+                }
+            }
+        }
+
+        if(file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    public static int getDisplacementSize(int resolution, int cascades) {
+        return resolution * resolution * 8 * cascades;
+    }
+
+    public static int getFrameSize(int resolution, int cascades) {
+        return getDisplacementSize(resolution, cascades) + resolution * resolution * 4 * cascades;
+    }
+
+    private static byte toSnorm8(float value) {
+        return (byte) Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * 127.0f);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
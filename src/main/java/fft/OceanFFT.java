@@ -0,0 +1,459 @@
+package fft;
+
+import com.jogamp.common.nio.Buffers;
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import utils.HalfFloat;
+
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless CPU version of the OceanSimulation pipeline (InitialSpectrum, then the phase, spectrum,
+ * subtransform and normal shaders). All outputs are float direct buffers laid out like the
+ * corresponding GL textures, so they can be passed straight to GLTexture data uploads.
+ */
+public class OceanFFT {
+
+    public static final float G = 9.81f;
+    public static final float KM = 370.0f;
+    public static final float CM = 0.23f;
+    // Foam is injected below this Jacobian, with this gain per second, and decays exponentially
+    public static final float FOAM_THRESHOLD = 0.6f;
+    public static final float FOAM_GAIN = 20.0f;
+    public static final float FOAM_DECAY = 1.5f;
+
+    private static final int GRAIN = 16;
+
+    private int resolution;
+    private float size;
+    private Vector2fc wind;
+    private float choppiness;
+
+    private float[] initialSpectrum;
+    private float[] omegas;
+    private float[] spectrum;
+    private float[] derivatives;
+    private float[] normals;
+    private float[] foam;
+
+    private FloatBuffer initialSpectrumBuffer;
+    private FloatBuffer spectrumBuffer;
+    private FloatBuffer displacementBuffer;
+    private FloatBuffer derivativeBuffer;
+    private FloatBuffer normalBuffer;
+    private FloatBuffer foamBuffer;
+
+    private StockhamFFT fft;
+    private ForkJoinPool pool;
+    private float time;
+    private float deltaTime;
+    private boolean updated;
+
+    private boolean halfStorage;
+    private boolean roundStages;
+    private boolean spectralNormals;
+
+    public OceanFFT(int resolution, float size, Vector2fc wind, float choppiness, long seed) {
+        this(resolution, size, wind, choppiness, seed, 0.0f, Float.MAX_VALUE);
+    }
+
+    /**
+     * Only keeps the wavenumbers in [bandStart, bandEnd), like a cascade in OceanSimulation.
+     */
+    public OceanFFT(int resolution, float size, Vector2fc wind, float choppiness, long seed, float bandStart, float bandEnd) {
+        this.resolution = resolution;
+        this.size = size;
+        this.wind = new Vector2f(wind);
+        this.choppiness = choppiness;
+
+        this.spectralNormals = true;
+
+        this.fft = new StockhamFFT(resolution);
+        this.pool = new ForkJoinPool();
+
+        int texels = resolution * resolution;
+        this.omegas = new float[texels];
+        this.spectrum = new float[texels * 4];
+        this.derivatives = new float[texels * 4];
+        this.normals = new float[texels * 4];
+        this.foam = new float[texels];
+        this.initialSpectrumBuffer = Buffers.newDirectFloatBuffer(texels * 4);
+        this.spectrumBuffer = Buffers.newDirectFloatBuffer(texels * 4);
+        this.displacementBuffer = Buffers.newDirectFloatBuffer(texels * 4);
+        this.derivativeBuffer = Buffers.newDirectFloatBuffer(texels * 4);
+        this.normalBuffer = Buffers.newDirectFloatBuffer(texels * 4);
+        this.foamBuffer = Buffers.newDirectFloatBuffer(texels);
+
+        // Same h0 as the OceanSimulation cascade with this seed and band
+        this.initialSpectrum = new InitialSpectrum(resolution, size, wind, seed, bandStart, bandEnd).generate();
+        run(Pass.OMEGA);
+        initialSpectrumBuffer.put(initialSpectrum).rewind();
+    }
+
+    /**
+     * The foam integrates over the time since the previous update.
+     */
+    public void update(float time) {
+        this.deltaTime = (updated ? time - this.time : 0.0f);
+        this.time = time;
+        this.updated = true;
+
+        run(Pass.SPECTRUM);
+        spectrumBuffer.put(spectrum).rewind();
+
+        // Transform both targets in place: rows (x) then columns (y)
+        run(Pass.TRANSFORM_ROWS);
+        run(Pass.TRANSFORM_COLUMNS);
+        displacementBuffer.put(spectrum).rewind();
+        derivativeBuffer.put(derivatives).rewind();
+
+        run(Pass.NORMALS);
+        normalBuffer.put(normals).rewind();
+        foamBuffer.put(foam).rewind();
+    }
+
+    /**
+     * Rounds every omega(k) to a multiple of 2 pi / period so that all phases, and with them the
+     * whole simulation, repeat after period seconds.
+     */
+    public void setLoopPeriod(float period) {
+        double baseOmega = 2.0 * Math.PI / period;
+        for(int y=0; y<resolution; ++y) {
+            float kz = waveNumber(y);
+            for(int x=0; x<resolution; ++x) {
+                float kx = waveNumber(x);
+                double omega = omega((float)Math.sqrt(kx * kx + kz * kz));
+                omegas[y * resolution + x] = (float)(Math.rint(omega / baseOmega) * baseOmega);
+            }
+        }
+    }
+
+    /**
+     * Emulates OceanSimulation with -Dfft.precision=half: everything the GPU stores between passes is
+     * rounded to half precision. With perStage every FFT stage is stored (fragment transform),
+     * otherwise only the output of each axis (compute transform).
+     */
+    public void setHalfStorage(boolean half, boolean perStage) {
+        this.halfStorage = half;
+        this.roundStages = half && perStage;
+    }
+
+    /**
+     * Normals from the transformed derivatives like the last transform pass of OceanSimulation
+     * (default), or from differencing the displacement like normal.fs.glsl (-Dfft.normals=difference).
+     */
+    public void setSpectralNormals(boolean spectralNormals) {
+        this.spectralNormals = spectralNormals;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public FloatBuffer getInitialSpectrum() {
+        return initialSpectrumBuffer;
+    }
+
+    public FloatBuffer getSpectrum() {
+        return spectrumBuffer;
+    }
+
+    /**
+     * RGBA texels of (Dx, h, Dz, dDx/dz).
+     */
+    public FloatBuffer getDisplacement() {
+        return displacementBuffer;
+    }
+
+    /**
+     * RGBA texels of (dh/dx, dh/dz, dDx/dx, dDz/dz), the second target of the transform.
+     */
+    public FloatBuffer getDerivatives() {
+        return derivativeBuffer;
+    }
+
+    public FloatBuffer getNormals() {
+        return normalBuffer;
+    }
+
+    /**
+     * Foam coverage in [0, 1], one float per texel.
+     */
+    public FloatBuffer getFoam() {
+        return foamBuffer;
+    }
+
+    public static float omega(float k) {
+        return (float)Math.sqrt(G * k * (1.0 + sqr(k / KM)));
+    }
+
+    /**
+     * Amplitude of h0 for the wave vector (kx, kz), the draws of InitialSpectrum are scaled by it.
+     */
+    public static float initialAmplitude(float kx, float kz, Vector2fc wind, float size) {
+        float k = (float)Math.sqrt(kx * kx + kz * kz);
+        if(k == 0.0f) {
+            return 0.0f;
+        }
+
+        double U10 = wind.length();
+
+        double Omega = 0.84;
+        double kp = G * sqr(Omega / U10);
+
+        double c = omega(k) / k;
+        double cp = omega((float)kp) / kp;
+
+        double Lpm = Math.exp(-1.25 * sqr(kp / k));
+        double gamma = 1.7;
+        double sigma = 0.08 * (1.0 + 4.0 * Math.pow(Omega, -3.0));
+        double Gamma = Math.exp(-sqr(Math.sqrt(k / kp) - 1.0) / 2.0 * sqr(sigma));
+        double Jp = Math.pow(gamma, Gamma);
+        double Fp = Lpm * Jp * Math.exp(-Omega / Math.sqrt(10.0) * (Math.sqrt(k / kp) - 1.0));
+        double alphap = 0.006 * Math.sqrt(Omega);
+        double B1 = 0.5 * alphap * cp / c * Fp;
+
+        double z0 = 0.000037 * sqr(U10) / G * Math.pow(U10 / cp, 0.9);
+        double uStar = 0.41 * U10 / Math.log(10.0 / z0);
+        double alpham = 0.01 * (uStar < CM ? 1.0 + Math.log(uStar / CM) : 1.0 + 3.0 * Math.log(uStar / CM));
+        double Fm = Math.exp(-0.25 * sqr(k / KM - 1.0));
+        double Bh = 0.5 * alpham * CM / c * Fm * Lpm;
+
+        double a0 = Math.log(2.0) / 4.0;
+        double am = 0.13 * uStar / CM;
+        double Delta = Math.tanh(a0 + 4.0 * Math.pow(c / cp, 2.5) + am * Math.pow(CM / c, 2.5));
+
+        double cosPhi = (wind.x() * kx + wind.y() * kz) / (U10 * k);
+
+        double S = (1.0 / (2.0 * Math.PI)) * Math.pow(k, -4.0) * (B1 + Bh) * (1.0 + Delta * (2.0 * cosPhi * cosPhi - 1.0));
+
+        double dk = 2.0 * Math.PI / size;
+        return (float)(Math.sqrt(S / 2.0) * dk);
+    }
+
+    private static double sqr(double x) {
+        return x * x;
+    }
+
+    private float waveNumber(int index) {
+        int n = (index < resolution / 2 ? index : index - resolution);
+        return (float)(2.0 * Math.PI * n / size);
+    }
+
+    private void run(Pass pass) {
+        pool.invoke(new PassTask(pass, 0, resolution));
+    }
+
+    private void runRows(Pass pass, int start, int end) {
+        switch (pass) {
+            case OMEGA:
+                for(int y=start; y<end; ++y) {
+                    float kz = waveNumber(y);
+                    for(int x=0; x<resolution; ++x) {
+                        float kx = waveNumber(x);
+                        omegas[y * resolution + x] = omega((float)Math.sqrt(kx * kx + kz * kz));
+                    }
+                }
+                break;
+            case SPECTRUM:
+                for(int y=start; y<end; ++y) {
+                    float kz = waveNumber(y);
+                    // h0(-k), exact so the packed signals stay real
+                    int my = (resolution - y) % resolution;
+                    for(int x=0; x<resolution; ++x) {
+                        float kx = waveNumber(x);
+                        int mx = (resolution - x) % resolution;
+                        int i = y * resolution + x;
+                        float k = (float)Math.sqrt(kx * kx + kz * kz);
+                        if(k == 0.0f) {
+                            for(int c=0; c<4; ++c) {
+                                spectrum[i * 4 + c] = derivatives[i * 4 + c] = 0.0f;
+                            }
+                            continue;
+                        }
+
+                        double phase = (omegas[i] * (double) time) % (2.0 * Math.PI);
+                        float cos = (float)Math.cos(phase);
+                        float sin = (float)Math.sin(phase);
+
+                        // h0 * exp(i phase) + conj(h0(-k)) * exp(-i phase)
+                        float h0Re = store(initialSpectrum[i * 4]);
+                        float h0Im = store(initialSpectrum[i * 4 + 1]);
+                        int mirror = (my * resolution + mx) * 4;
+                        float h0StarRe = store(initialSpectrum[mirror]);
+                        float h0StarIm = -store(initialSpectrum[mirror + 1]);
+                        float hRe = h0Re * cos - h0Im * sin + h0StarRe * cos + h0StarIm * sin;
+                        float hIm = h0Re * sin + h0Im * cos - h0StarRe * sin + h0StarIm * cos;
+
+                        // -i * h * (k / |k|) * choppiness
+                        float hXRe = hIm * (kx / k) * choppiness;
+                        float hXIm = -hRe * (kx / k) * choppiness;
+                        float hZRe = hIm * (kz / k) * choppiness;
+                        float hZIm = -hRe * (kz / k) * choppiness;
+
+                        // Derivatives are -i * k * value with the exp(-i k x) transform
+                        float slopeXRe = hIm * kx, slopeXIm = -hRe * kx;
+                        float slopeZRe = hIm * kz, slopeZIm = -hRe * kz;
+                        float hXXRe = hXIm * kx, hXXIm = -hXRe * kx;
+                        float hZZRe = hZIm * kz, hZZIm = -hZRe * kz;
+                        float hXZRe = hXIm * kz, hXZIm = -hXRe * kz;
+
+                        // Two real signals per complex value: a + i b
+                        spectrum[i * 4] = store(hXRe - hIm);
+                        spectrum[i * 4 + 1] = store(hXIm + hRe);
+                        spectrum[i * 4 + 2] = store(hZRe - hXZIm);
+                        spectrum[i * 4 + 3] = store(hZIm + hXZRe);
+                        derivatives[i * 4] = store(slopeXRe - slopeZIm);
+                        derivatives[i * 4 + 1] = store(slopeXIm + slopeZRe);
+                        derivatives[i * 4 + 2] = store(hXXRe - hZZIm);
+                        derivatives[i * 4 + 3] = store(hXXIm + hZZRe);
+                    }
+                }
+                break;
+            case TRANSFORM_ROWS: {
+                float[] scratchA = new float[resolution * 4];
+                float[] scratchB = new float[resolution * 4];
+                for(int y=start; y<end; ++y) {
+                    fft.transform(spectrum, y * resolution, 1, scratchA, scratchB, roundStages);
+                    fft.transform(derivatives, y * resolution, 1, scratchA, scratchB, roundStages);
+                    storeLine(y * resolution, 1);
+                }
+                break;
+            }
+            case TRANSFORM_COLUMNS: {
+                float[] scratchA = new float[resolution * 4];
+                float[] scratchB = new float[resolution * 4];
+                for(int x=start; x<end; ++x) {
+                    fft.transform(spectrum, x, resolution, scratchA, scratchB, roundStages);
+                    fft.transform(derivatives, x, resolution, scratchA, scratchB, roundStages);
+                    storeLine(x, resolution);
+                }
+                break;
+            }
+            case NORMALS:
+                if(spectralNormals) {
+                    runSpectralNormals(start, end);
+                }
+                else {
+                    runNormals(start, end);
+                }
+                runFoam(start, end);
+                break;
+        }
+    }
+
+    // Mirrors normal.fs.glsl, including its wrapping sampler
+    private void runNormals(int start, int end) {
+        float texelSize = size / resolution;
+        float[] d = spectrum;
+        for(int y=start; y<end; ++y) {
+            int up = (y + resolution - 1) % resolution * resolution;
+            int down = (y + 1) % resolution * resolution;
+            int row = y * resolution;
+            for(int x=0; x<resolution; ++x) {
+                int c = (row + x) * 4;
+                int r = (row + (x + 1) % resolution) * 4;
+                int l = (row + (x + resolution - 1) % resolution) * 4;
+                int t = (up + x) * 4;
+                int b = (down + x) * 4;
+
+                float rx = texelSize + d[r] - d[c], ry = d[r + 1] - d[c + 1], rz = d[r + 2] - d[c + 2];
+                float lx = -texelSize + d[l] - d[c], ly = d[l + 1] - d[c + 1], lz = d[l + 2] - d[c + 2];
+                float tx = d[t] - d[c], ty = d[t + 1] - d[c + 1], tz = -texelSize + d[t + 2] - d[c + 2];
+                float bx = d[b] - d[c], by = d[b + 1] - d[c + 1], bz = texelSize + d[b + 2] - d[c + 2];
+
+                // cross(right, top) + cross(top, left) + cross(left, bottom) + cross(bottom, right)
+                float nx = (ry * tz - rz * ty) + (ty * lz - tz * ly) + (ly * bz - lz * by) + (by * rz - bz * ry);
+                float ny = (rz * tx - rx * tz) + (tz * lx - tx * lz) + (lz * bx - lx * bz) + (bz * rx - bx * rz);
+                float nz = (rx * ty - ry * tx) + (tx * ly - ty * lx) + (lx * by - ly * bx) + (bx * ry - by * rx);
+                float length = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+                normals[c] = store(nx / length);
+                normals[c + 1] = store(ny / length);
+                normals[c + 2] = store(nz / length);
+                normals[c + 3] = 1.0f;
+            }
+        }
+    }
+
+    // Mirrors getNormal() of the transform shaders
+    private void runSpectralNormals(int start, int end) {
+        for(int i=start * resolution * 4; i<end * resolution * 4; i+=4) {
+            float dxz = spectrum[i + 3];
+            float slopeX = derivatives[i];
+            float slopeZ = derivatives[i + 1];
+            float dxx = derivatives[i + 2];
+            float dzz = derivatives[i + 3];
+
+            float nx = slopeZ * dxz - (1.0f + dzz) * slopeX;
+            float ny = (1.0f + dxx) * (1.0f + dzz) - dxz * dxz;
+            float nz = slopeX * dxz - slopeZ * (1.0f + dxx);
+            float length = (float)Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            normals[i] = store(nx / length);
+            normals[i + 1] = store(ny / length);
+            normals[i + 2] = store(nz / length);
+            normals[i + 3] = 1.0f;
+        }
+    }
+
+    // Mirrors getFoam() of the transform shaders
+    private void runFoam(int start, int end) {
+        float decay = (float)Math.exp(-FOAM_DECAY * deltaTime);
+        for(int i=start * resolution; i<end * resolution; ++i) {
+            float dxz = spectrum[i * 4 + 3];
+            float jacobian = (1.0f + derivatives[i * 4 + 2]) * (1.0f + derivatives[i * 4 + 3]) - dxz * dxz;
+            float value = foam[i] * decay + Math.max(FOAM_THRESHOLD - jacobian, 0.0f) * FOAM_GAIN * deltaTime;
+            foam[i] = store(Math.min(value, 1.0f));
+        }
+    }
+
+    private float store(float value) {
+        return (halfStorage ? HalfFloat.round(value) : value);
+    }
+
+    private void storeLine(int start, int stride) {
+        if(halfStorage && !roundStages) {
+            for(int i=0; i<resolution; ++i) {
+                int t = (start + i * stride) * 4;
+                for(int c=0; c<4; ++c) {
+                    spectrum[t + c] = HalfFloat.round(spectrum[t + c]);
+                    derivatives[t + c] = HalfFloat.round(derivatives[t + c]);
+                }
+            }
+        }
+    }
+
+    private enum Pass {
+        OMEGA, SPECTRUM, TRANSFORM_ROWS, TRANSFORM_COLUMNS, NORMALS
+    }
+
+    private class PassTask extends RecursiveAction {
+
+        private Pass pass;
+        private int start;
+        private int end;
+
+        public PassTask(Pass pass, int start, int end) {
+            this.pass = pass;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if(end - start > GRAIN) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new PassTask(pass, start, mid), new PassTask(pass, mid, end));
+                return;
+            }
+            runRows(pass, start, end);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package fft;
+
+import org.joml.Vector2f;
+
+public class OceanFFTBenchmark {
+
+    private static final int[] RESOLUTIONS = { 256, 512, 1024 };
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        System.out.printf("Stockham vs direct DFT max error (n=64): %.3e%n", verify(64));
+
+        for(int resolution : RESOLUTIONS) {
+            long start = System.nanoTime();
+            OceanFFT ocean = new OceanFFT(resolution, 250.0f, new Vector2f(10.0f, 10.0f), 1.0f, 12345);
+            long initTime = System.nanoTime() - start;
+
+            for(int n=0; n<WARMUP; ++n) {
+                ocean.update(n / 60.0f);
+            }
+            start = System.nanoTime();
+            for(int n=0; n<ITERATIONS; ++n) {
+                ocean.update(n / 60.0f);
+            }
+            long updateTime = (System.nanoTime() - start) / ITERATIONS;
+
+            System.out.printf("%4d^2  init %8.2f ms  update %8.2f ms%n", resolution, initTime / 1.0e6, updateTime / 1.0e6);
+        }
+    }
+
+    private static double verify(int n) {
+        java.util.Random rand = new java.util.Random(1);
+        float[] data = new float[n * 4];
+        for(int i=0; i<data.length; ++i) {
+            data[i] = rand.nextFloat() * 2.0f - 1.0f;
+        }
+        float[] input = data.clone();
+        new StockhamFFT(n).transform(data, 0, 1, new float[n * 4], new float[n * 4]);
+
+        double maxError = 0.0;
+        for(int k=0; k<n; ++k) {
+            for(int c=0; c<4; c+=2) {
+                double re = 0.0, im = 0.0;
+                for(int j=0; j<n; ++j) {
+                    double arg = -2.0 * Math.PI * j * k / n;
+                    re += input[j * 4 + c] * Math.cos(arg) - input[j * 4 + c + 1] * Math.sin(arg);
+                    im += input[j * 4 + c] * Math.sin(arg) + input[j * 4 + c + 1] * Math.cos(arg);
+                }
+                maxError = Math.max(maxError, Math.abs(re - data[k * 4 + c]));
+                maxError = Math.max(maxError, Math.abs(im - data[k * 4 + c + 1]));
+            }
+        }
+        return maxError;
+    }
+}
@@ -0,0 +1,634 @@
+package fft;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL4;
+import opengl.*;
+import org.joml.Vector2f;
+import org.joml.Vector2fc;
+import org.joml.Vector4f;
+import utils.DataFormat;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+
+/**
+ * GPU ocean of FFT cascades (or the playback of an OceanBake file), updated once per frame with
+ * update(). The outputs are texture arrays with one layer per cascade that tile with a wrapping
+ * sampler: getDisplacementTexture() (Dx, h, Dz, dDx/dz), getDerivativeTexture() and
+ * getNormalTexture(). Configured through the -Dfft.* properties.
+ */
+public class OceanSimulation {
+
+    private static final long SEED = 12345;
+    // MAX_CASCADES in the shaders
+    private static final int MAX_CASCADES = 4;
+    // A cascade keeps the waves from this many fundamental wavenumbers of its patch upwards
+    private static final float BAND_SPLIT = 6.0f;
+    // Analytic phases round omega(k) to multiples of OMEGA_STEP like OceanFFT.setLoopPeriod, so the
+    // time can be wrapped by PHASE_PERIOD in double precision before it is cut to a float uniform
+    private static final float OMEGA_STEP = (float)(2.0 * Math.PI / 1024.0);
+    private static final double PHASE_PERIOD = 2.0 * Math.PI / OMEGA_STEP;
+
+    private GLManager manager;
+    private SpectrumCache spectrumCache;
+
+    private GLVertexArray quadVAO;
+    private GLIndexBuffer quadIBO;
+
+    private GLShader phaseShader;
+    private GLShader spectrumShader;
+    private GLShader subtransformShader;
+    private ButterflyTexture butterflyTexture;
+    private boolean useButterflyTexture;
+    private boolean useAnalyticPhases;
+    private boolean useSpectralNormals;
+    private Precision precision;
+    private GLShader normalShader;
+
+    private GLShader computeTransformShader;
+    private boolean useComputeTransform;
+    private boolean compareTransforms;
+    private GLTimerQuery transformTimer;
+
+    private GLFrameBuffer[] phasesFBO;
+    private GLFrameBuffer[] phasesTransformFBO;
+    private GLFrameBuffer spectrumFBO;
+    // Same targets, indexed by the foam texture the last transform pass writes
+    private GLFrameBuffer[] displacementFBO;
+    private GLFrameBuffer normalFBO;
+    private GLTexture normalTexture;
+    private GLTexture[] foamTextures;
+    private int foamIndex;
+    private Vector4f foamParameters;
+
+    private DisplacementReadback displacementReadback;
+
+    private int bakedFrame;
+    private long startTime;
+    private int phaseIndex;
+    // Absolute simulation time of the analytic phases
+    private double time;
+    private int[] viewport;
+
+    private final Vector2fc wind = new Vector2f(10.0f, 10.0f);
+    private final float choppiness = 1.0f;
+    // Plays back an OceanBake file instead of simulating, its header sets the cascades
+    private final BakedOcean baked = (System.getProperty("fft.bake") != null ? BakedOcean.open(new File(System.getProperty("fft.bake"))) : null);
+    // Cascades are layers of one texture array, so they share the resolution
+    private final int resolution = (baked != null ? baked.getResolution() : Integer.getInteger("fft.resolution", 512));
+    // Patch sizes, largest first
+    private final float[] sizes = (baked != null ? baked.getSizes() : new float[]{ 250.0f, 50.0f, 10.0f });
+    private final int cascades = Math.max(1, Math.min(Integer.getInteger("fft.cascades", sizes.length), Math.min(sizes.length, MAX_CASCADES)));
+
+    public OceanSimulation(GLManager manager, SpectrumCache spectrumCache) {
+        this.manager = manager;
+        this.spectrumCache = spectrumCache;
+        this.viewport = new int[4];
+        this.foamParameters = new Vector4f(OceanFFT.FOAM_THRESHOLD, OceanFFT.FOAM_GAIN, OceanFFT.FOAM_DECAY, 0.0f);
+    }
+
+    public void init() {
+        // Sampler
+        GLSampler samplerNearest = manager.createSampler(GLSampler.EdgeType.CLAMP, false);
+        // The outputs tile like the ocean they describe
+        GLSampler samplerLinear = manager.createSampler(GLSampler.EdgeType.WRAP, true);
+
+        // Geometry
+        quadVAO = manager.createVertexArray();
+        GLVertexBuffer quadVBO = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 2));
+        quadVBO.setData(Buffers.newDirectFloatBuffer(new float[]{
+                -1.0f, -1.0f,
+                -1.0f, 1.0f,
+                1.0f, -1.0f,
+                1.0f, 1.0f
+        }));
+        quadVAO.addVertexBuffer(quadVBO);
+
+        quadIBO = manager.createIndexBuffer();
+        quadIBO.setData(Buffers.newDirectIntBuffer(new int[]{
+                0, 1, 2, 2, 1, 3
+        }));
+        quadIBO.setCount(6);
+
+        useAnalyticPhases = !"texture".equals(System.getProperty("fft.phases"));
+        useSpectralNormals = !"difference".equals(System.getProperty("fft.normals"));
+        precision = ("half".equals(System.getProperty("fft.precision")) ? Precision.HALF : Precision.FULL);
+        GLUtils.logDebug("FFT precision: " + precision);
+        GLUtils.logDebug("FFT normals: " + (useSpectralNormals ? "spectral" : "difference pass"));
+
+        // Initial Spectrum, generated on the CPU with one seed per cascade
+        long start = System.nanoTime();
+        FloatBuffer initialSpectrumBuffer = Buffers.newDirectFloatBuffer(resolution * resolution * 4 * cascades);
+        for(int c=0; c<cascades; ++c) {
+            InitialSpectrum spectrum = new InitialSpectrum(resolution, sizes[c], wind, SEED + c, getBandStart(c), getBandStart(c + 1));
+            initialSpectrumBuffer.put(spectrum.get(spectrumCache));
+        }
+        initialSpectrumBuffer.rewind();
+        GLUtils.logDebug(String.format("Initial spectrum: %.1f ms", (System.nanoTime() - start) / 1.0e6));
+
+        GLTexture initialSpectrumTexture = manager.createTextureArray(resolution, resolution, cascades, precision.getFormat(2), initialSpectrumBuffer);
+        initialSpectrumTexture.setSampler(samplerNearest);
+
+        // Spectrum
+        spectrumShader = createLayeredShader("/shader/fft/spectrum.fs.glsl");
+        spectrumShader.addTexture("initialSpectrum", initialSpectrumTexture);
+        spectrumShader.bind();
+        spectrumShader.setUniform1f("choppiness", choppiness);
+        spectrumShader.setUniform1f("resolution", resolution);
+        setCascadeUniforms(spectrumShader);
+        spectrumShader.setUniform1i("analyticPhases", useAnalyticPhases ? 1 : 0);
+        spectrumShader.setUniform1f("omegaStep", OMEGA_STEP);
+        spectrumShader.unbind();
+
+        spectrumFBO = createTransformFrameBuffer(samplerNearest);
+
+        // Swap phase mechanism, only without analytic phases (-Dfft.phases=texture).
+        // The random phases are part of h0 so all phases start at zero.
+        if(!useAnalyticPhases) {
+            phaseShader = createLayeredShader("/shader/fft/phase.fs.glsl");
+            phaseShader.bind();
+            phaseShader.setUniform1f("resolution", resolution);
+            setCascadeUniforms(phaseShader);
+            phaseShader.unbind();
+
+            // Single channel, always 32-bit: per-frame increments of slow waves are below half precision
+            FloatBuffer phaseBuffer = Buffers.newDirectFloatBuffer(resolution * resolution * 4 * cascades);
+
+            GLTexture aPhase = manager.createTextureArray(resolution, resolution, cascades, GL.GL_R32F, null);
+            aPhase.setSampler(samplerNearest);
+            GLTexture bPhase = manager.createTextureArray(resolution, resolution, cascades, GL.GL_R32F, phaseBuffer);
+            bPhase.setSampler(samplerNearest);
+
+            phasesFBO = new GLFrameBuffer[2];
+            phasesFBO[0] = manager.createFrameBuffer();
+            phasesFBO[0].addColorTexture(0, aPhase);
+            phasesFBO[1] = manager.createFrameBuffer();
+            phasesFBO[1].addColorTexture(0, bPhase);
+        }
+
+        phasesTransformFBO = new GLFrameBuffer[2];
+        phasesTransformFBO[0] = createTransformFrameBuffer(samplerNearest);
+        phasesTransformFBO[1] = createTransformFrameBuffer(samplerNearest);
+
+        // Subtransform
+        useButterflyTexture = !"false".equals(System.getProperty("fft.butterfly"));
+        if(useButterflyTexture) {
+            butterflyTexture = new ButterflyTexture(manager, samplerNearest);
+            butterflyTexture.update(resolution);
+            subtransformShader = createLayeredShader("/shader/fft/butterfly_subtransform.fs.glsl");
+            subtransformShader.addTexture("butterflyTexture", butterflyTexture.getTexture());
+        }
+        else {
+            subtransformShader = createLayeredShader("/shader/fft/subtransform.fs.glsl");
+        }
+        subtransformShader.bind();
+        subtransformShader.setUniform1f("resolution", resolution);
+        subtransformShader.unbind();
+
+        // Compute transform (GL 4.3), the subtransform passes stay as the fallback
+        useComputeTransform = GLUtils.supportsComputeShaders() && resolution <= 1024 &&
+                !"fragment".equals(System.getProperty("fft.transform"));
+        if(useComputeTransform) {
+            computeTransformShader = manager.createComputeShader("/shader/fft/fft.cs.glsl", "RESOLUTION " + resolution,
+                    "IMAGE_FORMAT " + precision.getImageFormat(), "FOAM_FORMAT " + precision.getImageFormat(1));
+            compareTransforms = true;
+        }
+        transformTimer = manager.createTimerQuery();
+        GLUtils.logDebug("FFT transform: " + getTransformName() + ", " + cascades + " cascades of " + resolution + "^2");
+
+        // Displacement (Dx, h, Dz, dDx/dz) and derivatives (dh/dx, dh/dz, dDx/dx, dDz/dz)
+        displacementFBO = new GLFrameBuffer[2];
+        displacementFBO[0] = createTransformFrameBuffer(samplerLinear);
+        GLTexture displacementTexture = displacementFBO[0].getColorTexture(0);
+
+        // CPU copy of the displacement for game logic, -1 disables it
+        int readbackLevel = Integer.getInteger("fft.readback.level", 2);
+        if(readbackLevel >= 0) {
+            displacementReadback = new DisplacementReadback(manager, displacementTexture, cascades, readbackLevel);
+        }
+
+        // Normal, written by the last transform pass from the derivatives. With -Dfft.normals=difference
+        // a separate pass differences the displacement instead.
+        normalTexture = manager.createTextureArray(resolution, resolution, cascades, precision.getFormat(4), null);
+        normalTexture.setSampler(samplerLinear);
+        displacementFBO[0].addColorTexture(2, normalTexture);
+        if(!useSpectralNormals) {
+            normalFBO = manager.createFrameBuffer();
+            normalFBO.addColorTexture(0, normalTexture);
+
+            normalShader = createLayeredShader("/shader/fft/normal.fs.glsl");
+            normalShader.addTexture("displacementMap", displacementTexture);
+            normalShader.bind();
+            normalShader.setUniform1f("resolution", resolution);
+            setCascadeUniforms(normalShader);
+            normalShader.unbind();
+        }
+
+        // Foam, accumulated from the Jacobian by the last transform pass. It reads the texture of the
+        // previous frame and writes the other one.
+        FloatBuffer foamBuffer = Buffers.newDirectFloatBuffer(resolution * resolution * 4 * cascades);
+        foamTextures = new GLTexture[2];
+        for(int i=0; i<2; ++i) {
+            foamTextures[i] = manager.createTextureArray(resolution, resolution, cascades, precision.getFormat(1), foamBuffer);
+            foamTextures[i].setSampler(samplerLinear);
+        }
+        displacementFBO[1] = manager.createFrameBuffer();
+        for(int i=0; i<3; ++i) {
+            displacementFBO[1].addColorTexture(i, displacementFBO[0].getColorTexture(i));
+        }
+        displacementFBO[0].addColorTexture(3, foamTextures[0]);
+        displacementFBO[1].addColorTexture(3, foamTextures[1]);
+
+        if(baked != null) {
+            GLUtils.logDebug("Playing baked ocean: " + baked.getFrames() + " frames, " + baked.getPeriod() + " s loop");
+        }
+        else if(System.getProperty("fft.bake") != null) {
+            GLUtils.logError("Not an ocean bake: " + System.getProperty("fft.bake"));
+        }
+        bakedFrame = -1;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Runs the passes of one frame, or uploads the current baked frame. Restores the viewport
+     * and leaves the default framebuffer bound.
+     */
+    public void update(float deltaTime) {
+        GL4 gl = GLUtils.getGL4();
+
+        gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+        boolean cullFace = gl.glIsEnabled(GL.GL_CULL_FACE);
+        gl.glDisable(GL.GL_CULL_FACE);
+        gl.glViewport(0, 0, resolution, resolution);
+
+        quadVAO.bind();
+        quadIBO.bind();
+
+        if(baked != null) {
+            playBaked();
+        }
+        else {
+            simulate(deltaTime);
+        }
+
+        quadIBO.unbind();
+        quadVAO.unbind();
+
+        if(displacementReadback != null) {
+            displacementReadback.update();
+            if(displacementReadback.getCompleted() >= 120) {
+                GLUtils.logDebug(String.format("Displacement readback: %.2f frames latency (max %d), %d dropped",
+                        displacementReadback.getAverageLatency(), displacementReadback.getMaxLatency(), displacementReadback.getDropped()));
+                displacementReadback.resetMetrics();
+            }
+        }
+
+        gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+        if(cullFace) {
+            gl.glEnable(GL.GL_CULL_FACE);
+        }
+    }
+
+    public GLTexture getSpectrumTexture() {
+        return spectrumFBO.getColorTexture(0);
+    }
+
+    public GLTexture getDisplacementTexture() {
+        return displacementFBO[0].getColorTexture(0);
+    }
+
+    /**
+     * (dh/dx, dh/dz, dDx/dx, dDz/dz), not written in baked playback.
+     */
+    public GLTexture getDerivativeTexture() {
+        return displacementFBO[0].getColorTexture(1);
+    }
+
+    public GLTexture getNormalTexture() {
+        return normalTexture;
+    }
+
+    /**
+     * Foam coverage in [0, 1] (red), swaps between two textures every frame. Zero in baked playback.
+     */
+    public GLTexture getFoamTexture() {
+        return foamTextures[foamIndex];
+    }
+
+    public boolean isBaked() {
+        return baked != null;
+    }
+
+    /**
+     * Jumps the simulation to the given time, the next frame shows it without any accumulation.
+     * Only exact with analytic phases.
+     */
+    public void setTime(double time) {
+        this.time = time;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Null if disabled with -Dfft.readback.level=-1.
+     */
+    public DisplacementReadback getDisplacementReadback() {
+        return displacementReadback;
+    }
+
+    public int getCascadeCount() {
+        return cascades;
+    }
+
+    public float getCascadeSize(int cascade) {
+        return sizes[cascade];
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Cascade c keeps the wavenumbers in [getBandStart(c), getBandStart(c + 1)), so the bands are
+     * disjoint and the smaller patches take over the shorter waves.
+     */
+    public float getBandStart(int cascade) {
+        return getBandStart(sizes, cascades, cascade);
+    }
+
+    public static float getBandStart(float[] sizes, int cascades, int cascade) {
+        if(cascade == 0) {
+            return 0.0f;
+        }
+        if(cascade >= cascades) {
+            return Float.MAX_VALUE;
+        }
+        return 2.0f * (float)Math.PI / sizes[cascade] * BAND_SPLIT;
+    }
+
+    private GLShader createLayeredShader(String fragmentFile) {
+        return manager.createShader("/shader/fft/layered_quad.vs.glsl", "/shader/fft/layered_quad.gs.glsl", fragmentFile);
+    }
+
+    // Two RGBA arrays, the displacement target and the derivative target of the transform chain
+    private GLFrameBuffer createTransformFrameBuffer(GLSampler sampler) {
+        GLFrameBuffer frameBuffer = manager.createFrameBuffer();
+        for(int i=0; i<2; ++i) {
+            GLTexture texture = manager.createTextureArray(resolution, resolution, cascades, precision.getFormat(4), null);
+            texture.setSampler(sampler);
+            frameBuffer.addColorTexture(i, texture);
+        }
+        return frameBuffer;
+    }
+
+    private void readTransformTargets(FloatBuffer result, int count) {
+        for(int i=0; i<2; ++i) {
+            result.position(i * count);
+            displacementFBO[0].getColorTexture(i).getData(result);
+        }
+        result.rewind();
+    }
+
+    private void setCascadeUniforms(GLShader shader) {
+        for(int c=0; c<cascades; ++c) {
+            shader.setUniform1f("sizes[" + c + "]", sizes[c]);
+        }
+    }
+
+    // One instanced quad per cascade, expects the quad to be bound
+    private void drawLayers() {
+        GL4 gl = GLUtils.getGL4();
+
+        gl.glDrawElementsInstanced(GL.GL_TRIANGLES, quadIBO.getCount(), GL.GL_UNSIGNED_INT, 0, cascades);
+        GLUtils.checkError("glDrawElementsInstanced");
+    }
+
+    // Phase, spectrum, transform and (without spectral normals) normal passes, expects the quad to be bound
+    private void simulate(float deltaTime) {
+        foamIndex = 1 - foamIndex;
+        foamParameters.w = deltaTime;
+
+        if(useAnalyticPhases) {
+            time += deltaTime;
+
+            spectrumFBO.bind();
+
+            spectrumShader.bind();
+            spectrumShader.setUniform1f("time", (float)(time % PHASE_PERIOD));
+            drawLayers();
+            spectrumShader.unbind();
+        }
+        else {
+            int nextPhaseIndex = (phaseIndex + 1) % 2;
+
+            phasesFBO[phaseIndex].bind();
+
+            phaseShader.addTexture("phases", phasesFBO[nextPhaseIndex].getColorTexture(0));
+            phaseShader.bind();
+            phaseShader.setUniform1f("deltaTime", deltaTime);
+            drawLayers();
+            phaseShader.unbind();
+
+            spectrumFBO.bind();
+
+            spectrumShader.addTexture("phases", phasesFBO[phaseIndex].getColorTexture(0));
+            spectrumShader.bind();
+            drawLayers();
+            spectrumShader.unbind();
+
+            phaseIndex = nextPhaseIndex;
+        }
+
+        if(compareTransforms) {
+            compareTransforms();
+            compareTransforms = false;
+        }
+
+        transformTimer.begin();
+        if(useComputeTransform) {
+            transformCompute();
+        }
+        else {
+            transformFragment();
+        }
+        transformTimer.end();
+
+        if(transformTimer.getSamples() >= 120) {
+            GLUtils.logDebug(String.format("FFT transform (%s): %.3f ms", getTransformName(), transformTimer.getAverageMillis()));
+            transformTimer.reset();
+        }
+
+        if(useSpectralNormals) {
+            displacementFBO[foamIndex].unbind();
+        }
+        else {
+            normalFBO.bind();
+            normalShader.bind();
+            drawLayers();
+            normalFBO.unbind();
+        }
+    }
+
+    // Two uploads straight from the mapped bake, only when the frame changes
+    private void playBaked() {
+        int frame = baked.getFrame((System.nanoTime() - startTime) / 1.0e9f);
+        if(frame == bakedFrame) {
+            return;
+        }
+        displacementFBO[0].getColorTexture(0).setData(baked.getDisplacement(frame), GL.GL_RGBA, GL.GL_HALF_FLOAT);
+        normalTexture.setData(baked.getNormals(frame), GL.GL_RGBA, GL.GL_BYTE);
+        bakedFrame = frame;
+    }
+
+    // log2(resolution) * 2 fullscreen subtransform passes over all cascades, expects the quad to be bound
+    private void transformFragment() {
+        subtransformShader.addTexture("previousFoam", foamTextures[1 - foamIndex]);
+        subtransformShader.bind();
+        subtransformShader.setUniform4f("foamParameters", foamParameters);
+        subtransformShader.setUniform1f("direction", 0.0f);
+        int iterations = (int)(Math.log(resolution) / Math.log(2)) * 2;
+        for(int i=0; i<iterations; ++i) {
+            GLFrameBuffer input = null;
+            if(i == 0) {
+                phasesTransformFBO[0].bind();
+                input = spectrumFBO;
+            }
+            else if(i == iterations - 1) {
+                displacementFBO[foamIndex].bind();
+                input = phasesTransformFBO[(iterations % 2)];
+            }
+            else if(i % 2 == 1) {
+                phasesTransformFBO[1].bind();
+                input = phasesTransformFBO[0];
+            }
+            else {
+                phasesTransformFBO[0].bind();
+                input = phasesTransformFBO[1];
+            }
+            subtransformShader.addTexture("inputTexture", input.getColorTexture(0));
+            subtransformShader.addTexture("inputDerivatives", input.getColorTexture(1));
+            subtransformShader.updateTextures();
+
+            if(i == iterations / 2) {
+                subtransformShader.setUniform1f("direction", 1.0f);
+            }
+
+            subtransformShader.setUniform1i("writeNormals", (useSpectralNormals && i == iterations - 1) ? 1 : 0);
+            subtransformShader.setUniform1i("writeFoam", (i == iterations - 1) ? 1 : 0);
+            subtransformShader.setUniform1i("stage", i % (iterations / 2));
+            subtransformShader.setUniform1f("subtransformSize", (float)Math.pow(2, (i % (iterations / 2)) + 1.0f));
+            drawLayers();
+        }
+        subtransformShader.unbind();
+    }
+
+    private String getTransformName() {
+        if(useComputeTransform) {
+            return "compute";
+        }
+        return (useButterflyTexture ? "fragment, butterfly texture" : "fragment, procedural");
+    }
+
+    // One dispatch per axis, a work group per row/column and cascade transforms both targets
+    private void transformCompute() {
+        GL4 gl = GLUtils.getGL4();
+
+        GLFrameBuffer rows = phasesTransformFBO[0];
+
+        addTransformImages(spectrumFBO, rows);
+        computeTransformShader.addImage(4, normalTexture, GL4.GL_WRITE_ONLY);
+        computeTransformShader.addImage(5, foamTextures[foamIndex], GL4.GL_WRITE_ONLY);
+        computeTransformShader.addTexture("previousFoam", foamTextures[1 - foamIndex]);
+        computeTransformShader.bind();
+        computeTransformShader.setUniform1i("direction", 0);
+        computeTransformShader.setUniform1i("writeNormals", 0);
+        computeTransformShader.setUniform1i("writeFoam", 0);
+        computeTransformShader.setUniform4f("foamParameters", foamParameters);
+        gl.glDispatchCompute(resolution, cascades, 1);
+        GLUtils.checkError("glDispatchCompute");
+        gl.glMemoryBarrier(GL4.GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+
+        addTransformImages(rows, displacementFBO[0]);
+        computeTransformShader.updateImages();
+        computeTransformShader.setUniform1i("direction", 1);
+        computeTransformShader.setUniform1i("writeNormals", useSpectralNormals ? 1 : 0);
+        computeTransformShader.setUniform1i("writeFoam", 1);
+        gl.glDispatchCompute(resolution, cascades, 1);
+        GLUtils.checkError("glDispatchCompute");
+        gl.glMemoryBarrier(GL4.GL_TEXTURE_FETCH_BARRIER_BIT | GL4.GL_FRAMEBUFFER_BARRIER_BIT);
+        computeTransformShader.unbind();
+    }
+
+    // Images 0 and 1 are read, 2 and 3 written, in the order of the color attachments
+    private void addTransformImages(GLFrameBuffer input, GLFrameBuffer output) {
+        for(int i=0; i<2; ++i) {
+            computeTransformShader.addImage(i, input.getColorTexture(i), GL4.GL_READ_ONLY);
+            computeTransformShader.addImage(2 + i, output.getColorTexture(i), GL4.GL_WRITE_ONLY);
+        }
+    }
+
+    // Runs both transforms on the same spectrum once and logs how far apart both targets are
+    private void compareTransforms() {
+        int count = resolution * resolution * 4 * cascades;
+        FloatBuffer fragmentResult = Buffers.newDirectFloatBuffer(count * 2);
+        FloatBuffer computeResult = Buffers.newDirectFloatBuffer(count * 2);
+
+        transformFragment();
+        readTransformTargets(fragmentResult, count);
+        transformCompute();
+        readTransformTargets(computeResult, count);
+
+        count *= 2;
+
+        float maxError = 0.0f;
+        float maxValue = 0.0f;
+        for(int i=0; i<count; ++i) {
+            maxError = Math.max(maxError, Math.abs(fragmentResult.get(i) - computeResult.get(i)));
+            maxValue = Math.max(maxValue, Math.abs(fragmentResult.get(i)));
+        }
+        GLUtils.logDebug("FFT compute vs fragment: max error " + maxError + " (max value " + maxValue + ")");
+    }
+
+    /**
+     * Storage of the pipeline textures. The initial spectrum only needs two channels, the
+     * arithmetic in the shaders is 32-bit either way.
+     */
+    public enum Precision {
+        FULL(GL.GL_R32F, GL.GL_RG32F, GL.GL_RGBA32F, "32f", 4),
+        HALF(GL.GL_R16F, GL.GL_RG16F, GL.GL_RGBA16F, "16f", 2);
+
+        private static final String[] IMAGE_CHANNELS = { "r", "rg", "rgba", "rgba" };
+
+        private int[] formats;
+        private String imageFormat;
+        private int bytesPerChannel;
+
+        Precision(int r, int rg, int rgba, String imageFormat, int bytesPerChannel) {
+            this.formats = new int[]{ r, rg, rgba, rgba };
+            this.imageFormat = imageFormat;
+            this.bytesPerChannel = bytesPerChannel;
+        }
+
+        public int getFormat(int channels) {
+            return formats[channels - 1];
+        }
+
+        public String getImageFormat() {
+            return getImageFormat(4);
+        }
+
+        /**
+         * Layout qualifier of an image with the format of getFormat(channels).
+         */
+        public String getImageFormat(int channels) {
+            return IMAGE_CHANNELS[channels - 1] + imageFormat;
+        }
+
+        public int getBytesPerTexel(int channels) {
+            return bytesPerChannel * channels;
+        }
+    }
+}
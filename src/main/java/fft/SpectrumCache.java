@@ -0,0 +1,107 @@
+package fft;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * On-disk store of generated initial spectra, one file per (resolution, size, wind, seed, band).
+ * The parameters are hashed into the file name and repeated in the header with a format version,
+ * so a hash collision or an older file is treated as a miss. Entries are memory-mapped on load so
+ * they can be handed straight to GLTexture.setData.
+ */
+public class SpectrumCache {
+
+    private static final int MAGIC = 0x48305350;
+    // Bump when the generator or the texel layout change, older files are regenerated then
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 4 + 8 + 4 + 4;
+
+    private File directory;
+
+    public SpectrumCache(File directory) {
+        this.directory = directory;
+    }
+
+    public FloatBuffer load(InitialSpectrum spectrum) {
+        File file = getFile(spectrum);
+        if(!file.isFile()) {
+            return null;
+        }
+
+        long length = (long) spectrum.getResolution() * spectrum.getResolution() * 4 * 4;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if(raf.length() != HEADER_SIZE + length ||
+                    raf.readInt() != MAGIC ||
+                    raf.readInt() != VERSION ||
+                    raf.readInt() != spectrum.getResolution() ||
+                    raf.readFloat() != spectrum.getSize() ||
+                    raf.readFloat() != spectrum.getWind().x() ||
+                    raf.readFloat() != spectrum.getWind().y() ||
+                    raf.readLong() != spectrum.getSeed() ||
+                    raf.readFloat() != spectrum.getBandStart() ||
+                    raf.readFloat() != spectrum.getBandEnd()) {
+                return null;
+            }
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+            return buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public FloatBuffer store(InitialSpectrum spectrum, float[] data) {
+        File file = getFile(spectrum);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(spectrum.getResolution());
+            raf.writeFloat(spectrum.getSize());
+            raf.writeFloat(spectrum.getWind().x());
+            raf.writeFloat(spectrum.getWind().y());
+            raf.writeLong(spectrum.getSeed());
+            raf.writeFloat(spectrum.getBandStart());
+            raf.writeFloat(spectrum.getBandEnd());
+
+            // Texels in native order, like the direct buffers uploaded to GL
+            ByteBuffer buffer = ByteBuffer.allocateDirect(data.length * 4).order(ByteOrder.nativeOrder());
+            buffer.asFloatBuffer().put(data);
+            FileChannel channel = raf.getChannel();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if(file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            return null;
+        }
+        return load(spectrum);
+    }
+
+    private File getFile(InitialSpectrum spectrum) {
+        int hash = Float.floatToIntBits(spectrum.getSize());
+        hash = 31 * hash + Float.floatToIntBits(spectrum.getWind().x());
+        hash = 31 * hash + Float.floatToIntBits(spectrum.getWind().y());
+        hash = 31 * hash + (int)(spectrum.getSeed() ^ (spectrum.getSeed() >>> 32));
+        hash = 31 * hash + Float.floatToIntBits(spectrum.getBandStart());
+        hash = 31 * hash + Float.floatToIntBits(spectrum.getBandEnd());
+        return new File(directory, "spectrum_" + spectrum.getResolution() + "_" + Integer.toHexString(hash) + ".bin");
+    }
+}
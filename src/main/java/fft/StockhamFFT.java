@@ -0,0 +1,109 @@
+package fft;
+
+import utils.HalfFloat;
+
+/**
+ * Iterative radix-2 Stockham transform in the same form as subtransform.fs.glsl: every stage reads
+ * the even input at floor(i / n) * n / 2 + i mod n / 2 and the odd input half a line further, and
+ * applies the twiddle exp(-2 pi i * index / n). Elements are RGBA texels holding two complex values
+ * (.xy and .zw) that are transformed together, matching the texture layout of the GPU pipeline.
+ */
+public class StockhamFFT {
+
+    private int size;
+    private int stages;
+    private int[][] evenIndices;
+    private float[][] twiddleRe;
+    private float[][] twiddleIm;
+
+    public StockhamFFT(int size) {
+        if(Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+
+        this.size = size;
+        this.stages = Integer.numberOfTrailingZeros(size);
+        this.evenIndices = new int[stages][size];
+        this.twiddleRe = new float[stages][size];
+        this.twiddleIm = new float[stages][size];
+        for(int s=0; s<stages; ++s) {
+            int subtransformSize = 2 << s;
+            int half = subtransformSize / 2;
+            for(int i=0; i<size; ++i) {
+                evenIndices[s][i] = (i / subtransformSize) * half + i % half;
+                double arg = -2.0 * Math.PI * ((double) i / subtransformSize);
+                twiddleRe[s][i] = (float)Math.cos(arg);
+                twiddleIm[s][i] = (float)Math.sin(arg);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getStages() {
+        return stages;
+    }
+
+    public int[] getEvenIndices(int stage) {
+        return evenIndices[stage];
+    }
+
+    public float[] getTwiddleRe(int stage) {
+        return twiddleRe[stage];
+    }
+
+    public float[] getTwiddleIm(int stage) {
+        return twiddleIm[stage];
+    }
+
+    /**
+     * Transforms the line of size texels at data[(start + i * stride) * 4]. The scratch arrays must
+     * hold size * 4 floats each.
+     */
+    public void transform(float[] data, int start, int stride, float[] scratchA, float[] scratchB) {
+        transform(data, start, stride, scratchA, scratchB, false);
+    }
+
+    /**
+     * With roundStages every stage output is rounded to half precision, like the fragment
+     * transform storing each pass in a 16F render target.
+     */
+    public void transform(float[] data, int start, int stride, float[] scratchA, float[] scratchB, boolean roundStages) {
+        for(int i=0; i<size; ++i) {
+            System.arraycopy(data, (start + i * stride) * 4, scratchA, i * 4, 4);
+        }
+
+        float[] in = scratchA;
+        float[] out = scratchB;
+        int halfSize = size / 2;
+        for(int s=0; s<stages; ++s) {
+            int[] even = evenIndices[s];
+            float[] wr = twiddleRe[s];
+            float[] wi = twiddleIm[s];
+            for(int i=0; i<size; ++i) {
+                int e = even[i] * 4;
+                int o = (even[i] + halfSize) * 4;
+                float twr = wr[i];
+                float twi = wi[i];
+                out[i * 4] = in[e] + twr * in[o] - twi * in[o + 1];
+                out[i * 4 + 1] = in[e + 1] + twi * in[o] + twr * in[o + 1];
+                out[i * 4 + 2] = in[e + 2] + twr * in[o + 2] - twi * in[o + 3];
+                out[i * 4 + 3] = in[e + 3] + twi * in[o + 2] + twr * in[o + 3];
+            }
+            if(roundStages) {
+                for(int i=0; i<size * 4; ++i) {
+                    out[i] = HalfFloat.round(out[i]);
+                }
+            }
+            float[] swap = in;
+            in = out;
+            out = swap;
+        }
+
+        for(int i=0; i<size; ++i) {
+            System.arraycopy(in, i * 4, data, (start + i * stride) * 4, 4);
+        }
+    }
+}
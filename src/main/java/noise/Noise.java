@@ -3,40 +3,60 @@ package noise;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Adapted from Boojum's Python noise function
  * (https://gamedev.stackexchange.com/questions/23625/how-do-you-generate-tileable-perlin-noise)
  */
 
-public class Noise {
+public class Noise implements NoiseSource {
 
     private static final int MAX_PERM = 256;
 
     private int[] perm;
     private double[][] dirs;
+    private double[] dirX;
+    private double[] dirY;
 
     public Noise() {
+        this(new Random());
+    }
+
+    public Noise(long seed) {
+        this(new Random(seed));
+    }
+
+    private Noise(Random random) {
+        this.perm = createPermutation(random);
+
+        this.dirs = new double[MAX_PERM][2];
+        this.dirX = new double[MAX_PERM];
+        this.dirY = new double[MAX_PERM];
+        for(int i=0; i<MAX_PERM; ++i) {
+            dirs[i][0] = Math.cos(i * 2.0 * Math.PI / 256.0);
+            dirs[i][1] = Math.sin(i * 2.0 * Math.PI / 256.0);
+            dirX[i] = dirs[i][0];
+            dirY[i] = dirs[i][1];
+        }
+    }
+
+    static int[] createPermutation(Random random) {
         List<Integer> permList = new ArrayList<>();
         for(int i=0; i<MAX_PERM; ++i) {
             permList.add(i);
         }
-        Collections.shuffle(permList);
+        Collections.shuffle(permList, random);
 
-        this.perm = new int[MAX_PERM * 2];
+        int[] perm = new int[MAX_PERM * 2];
         for(int i=0; i<MAX_PERM; ++i) {
             perm[i] = permList.get(i);
             perm[i + MAX_PERM] = permList.get(i);
         }
-
-
-        this.dirs = new double[MAX_PERM][2];
-        for(int i=0; i<MAX_PERM; ++i) {
-            dirs[i][0] = Math.cos(i * 2.0 * Math.PI / 256.0);
-            dirs[i][1] = Math.sin(i * 2.0 * Math.PI / 256.0);
-        }
+        return perm;
     }
 
+    @Override
     public float noise(float x, float y, int per) {
         int intX = (int)x;
         int intY = (int)y;
@@ -56,4 +76,79 @@ public class Noise {
         double grad = (x - gridX) * dirs[hashed][0] + (y - gridY) * dirs[hashed][1];
         return polyX * polyY * grad;
     }
+
+    @Override
+    public void fillTile(float[] out, int size, float scale, int period) {
+        fillRows(out, size, scale, period, 0, size);
+    }
+
+    /**
+     * The column terms are shared by every row and are computed once up front; each row then runs
+     * a gather pass for the gradients and a branch-free arithmetic pass over flat arrays.
+     */
+    @Override
+    public void fillRows(float[] out, int size, float scale, int period, int rowStart, int rowEnd) {
+        // Column terms (y)
+        double[] dy0 = new double[size];
+        double[] dy1 = new double[size];
+        double[] fy0 = new double[size];
+        double[] fy1 = new double[size];
+        int[] hy0 = new int[size];
+        int[] hy1 = new int[size];
+        for(int j=0; j<size; ++j) {
+            float y = j * scale;
+            int intY = (int)y;
+            dy0[j] = y - intY;
+            dy1[j] = y - (intY + 1);
+            fy0[j] = fade(Math.abs(y - intY));
+            fy1[j] = fade(Math.abs(y - (intY + 1)));
+            hy0[j] = intY % period;
+            hy1[j] = (intY + 1) % period;
+        }
+
+        // Row scratch (gathered gradients)
+        double[] g00x = new double[size], g00y = new double[size];
+        double[] g10x = new double[size], g10y = new double[size];
+        double[] g01x = new double[size], g01y = new double[size];
+        double[] g11x = new double[size], g11y = new double[size];
+
+        for(int i=rowStart; i<rowEnd; ++i) {
+            float x = i * scale;
+            int intX = (int)x;
+            double dx0 = x - intX;
+            double dx1 = x - (intX + 1);
+            double fx0 = fade(Math.abs(x - intX));
+            double fx1 = fade(Math.abs(x - (intX + 1)));
+            int px0 = perm[intX % period];
+            int px1 = perm[(intX + 1) % period];
+
+            for(int j=0; j<size; ++j) {
+                int h00 = perm[px0 + hy0[j]];
+                int h10 = perm[px1 + hy0[j]];
+                int h01 = perm[px0 + hy1[j]];
+                int h11 = perm[px1 + hy1[j]];
+                g00x[j] = dirX[h00]; g00y[j] = dirY[h00];
+                g10x[j] = dirX[h10]; g10y[j] = dirY[h10];
+                g01x[j] = dirX[h01]; g01y[j] = dirY[h01];
+                g11x[j] = dirX[h11]; g11y[j] = dirY[h11];
+            }
+
+            // Same summation order as noise() so the results match it
+            int offset = (i - rowStart) * size;
+            for(int j=0; j<size; ++j) {
+                out[offset + j] = (float)(
+                        fx0 * fy0[j] * (dx0 * g00x[j] + dy0[j] * g00y[j]) +
+                        fx1 * fy0[j] * (dx1 * g10x[j] + dy0[j] * g10y[j]) +
+                        fx0 * fy1[j] * (dx0 * g01x[j] + dy1[j] * g01y[j]) +
+                        fx1 * fy1[j] * (dx1 * g11x[j] + dy1[j] * g11y[j]));
+            }
+        }
+    }
+
+    private static double fade(double d) {
+        double d3 = d * d * d;
+        double d4 = d3 * d;
+        double d5 = d4 * d;
+        return 1 - 6 * d5 + 15 * d4 - 10 * d3;
+    }
 }
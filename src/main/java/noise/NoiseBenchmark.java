@@ -0,0 +1,64 @@
+package noise;
+
+public class NoiseBenchmark {
+
+    private static final int SIZE = 256;
+    private static final int OCTAVES = 4;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) {
+        Noise perlin = new Noise();
+        float[] scalar = new float[SIZE * SIZE];
+        float[] batch = new float[SIZE * SIZE];
+
+        // Verify
+        int mismatches = 0;
+        for(int o=0; o<OCTAVES; ++o) {
+            int pow = (int)Math.pow(2, o);
+            fillScalar(perlin, scalar, pow / 32.0f, 8 * pow);
+            perlin.fillTile(batch, SIZE, pow / 32.0f, 8 * pow);
+            for(int i=0; i<scalar.length; ++i) {
+                if(Float.floatToIntBits(scalar[i]) != Float.floatToIntBits(batch[i])) {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println("Mismatched samples: " + mismatches + " / " + (OCTAVES * SIZE * SIZE));
+
+        // Benchmark
+        for(int n=0; n<WARMUP; ++n) {
+            fillScalar(perlin, scalar, 1.0f / 32.0f, 8);
+            perlin.fillTile(batch, SIZE, 1.0f / 32.0f, 8);
+        }
+
+        long start = System.nanoTime();
+        for(int n=0; n<ITERATIONS; ++n) {
+            fillScalar(perlin, scalar, 1.0f / 32.0f, 8);
+        }
+        long scalarTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int n=0; n<ITERATIONS; ++n) {
+            perlin.fillTile(batch, SIZE, 1.0f / 32.0f, 8);
+        }
+        long batchTime = System.nanoTime() - start;
+
+        report("noise()", scalarTime);
+        report("fillTile()", batchTime);
+        System.out.printf("Speedup: %.2fx%n", (double) scalarTime / batchTime);
+    }
+
+    private static void fillScalar(Noise perlin, float[] out, float scale, int period) {
+        for(int i=0; i<SIZE; ++i) {
+            for(int j=0; j<SIZE; ++j) {
+                out[i * SIZE + j] = perlin.noise(i * scale, j * scale, period);
+            }
+        }
+    }
+
+    private static void report(String name, long nanos) {
+        double samples = (double) ITERATIONS * SIZE * SIZE;
+        System.out.printf("%-12s %8.2f Msamples/s%n", name, samples / (nanos / 1.0e9) / 1.0e6);
+    }
+}
@@ -0,0 +1,86 @@
+package noise;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * On-disk store of generated octave texel data, one file per (source, seed, size, octave, period).
+ * The header carries a format version, files of another version are treated as a miss.
+ * Entries are memory-mapped on load so they can be handed straight to GLTexture.setData.
+ */
+public class NoiseCache {
+
+    private static final int MAGIC = 0x4E4F4953;
+    // Bump when the generators or the texel layout change, older files are regenerated then
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4 + 4 + 4;
+
+    private File directory;
+
+    public NoiseCache(File directory) {
+        this.directory = directory;
+    }
+
+    public ByteBuffer load(NoiseSource.Type type, long seed, int size, int octave, int period) {
+        File file = getFile(type, seed, size, octave, period);
+        if(!file.isFile()) {
+            return null;
+        }
+
+        long length = (long) size * size * 4;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if(raf.length() != HEADER_SIZE + length ||
+                    raf.readInt() != MAGIC ||
+                    raf.readInt() != VERSION ||
+                    raf.readInt() != type.ordinal() ||
+                    raf.readLong() != seed ||
+                    raf.readInt() != size ||
+                    raf.readInt() != octave ||
+                    raf.readInt() != period) {
+                return null;
+            }
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, length);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public ByteBuffer store(NoiseSource.Type type, long seed, int size, int octave, int period, byte[] data) {
+        File file = getFile(type, seed, size, octave, period);
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(type.ordinal());
+            raf.writeLong(seed);
+            raf.writeInt(size);
+            raf.writeInt(octave);
+            raf.writeInt(period);
+            raf.write(data);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if(file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            return null;
+        }
+        return load(type, seed, size, octave, period);
+    }
+
+    private File getFile(NoiseSource.Type type, long seed, int size, int octave, int period) {
+        return new File(directory, "noise_" + type.name().toLowerCase() + "_" + seed + "_" + size + "_" + octave + "_" + period + ".bin");
+    }
+}
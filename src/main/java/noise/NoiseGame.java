@@ -5,14 +5,12 @@ import com.jogamp.opengl.*;
 import com.jogamp.opengl.awt.GLCanvas;
 import com.jogamp.opengl.util.Animator;
 import opengl.*;
-import org.joml.SimplexNoise;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 import utils.Camera;
 import utils.DataFormat;
 
 import javax.swing.*;
-import java.nio.ByteBuffer;
 
 public class NoiseGame extends JFrame implements GLEventListener {
 
@@ -26,8 +24,9 @@ public class NoiseGame extends JFrame implements GLEventListener {
     private Animator animator;
 
     private GLManager manager;
+    private NoiseTextureFactory noiseFactory;
 
-    private GLTexture[] noiseTextures = new GLTexture[OCTAVES];
+    private GLTexture[] noiseTextures;
 
     private GLVertexArray quadVAO;
     private GLIndexBuffer quadIBO;
@@ -44,6 +43,7 @@ public class NoiseGame extends JFrame implements GLEventListener {
         this.canvas = new GLCanvas();
         this.animator = new Animator(this.canvas);
         this.manager = new GLManager();
+        this.noiseFactory = new NoiseTextureFactory(this.manager);
 
         this.camera = new Camera(width, height);
         this.camera.setPosition(new Vector3f(0.0f, 10.0f, 0.0f));
@@ -69,9 +69,6 @@ public class NoiseGame extends JFrame implements GLEventListener {
         gl.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
         GLUtils.checkError("glClearColor");
 
-        // Common
-        GLSampler sampler = manager.createSampler(GLSampler.EdgeType.WRAP, false);
-
         // Geometry
         quadVAO = manager.createVertexArray();
         GLVertexBuffer quadVBO = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 2));
@@ -92,25 +89,9 @@ public class NoiseGame extends JFrame implements GLEventListener {
         // Shader
         quadShader = manager.createShader("/shader/quad.vs.glsl", "/shader/noise.fs.glsl");
 
-        // Generate Noise
-        Noise perlin = new Noise();
+        // Noise
+        noiseTextures = noiseFactory.createOctaves(SIZE, OCTAVES, GLSampler.EdgeType.WRAP, false);
         for(int o=0; o<OCTAVES; ++o) {
-            noiseTextures[o] = manager.createTexture(SIZE, SIZE, false, null);
-            noiseTextures[o].setSampler(sampler);
-
-            int pow = (int)Math.pow(2, o);
-
-            ByteBuffer textureData = Buffers.newDirectByteBuffer(SIZE * SIZE * 4);
-            for(int i=0; i<SIZE; ++i) {
-                for(int j=0; j<SIZE; ++j) {
-                    float normalHeight = perlin.noise(i * pow / 32.0f, j * pow / 32.0f, 8 * pow) * 0.5f + 0.5f;
-                    byte val = (byte)(normalHeight * 256.0f);
-                    textureData.put(val).put(val).put(val).put((byte)255);
-                }
-            }
-            textureData.rewind();
-            noiseTextures[o].setData(textureData);
-
             quadShader.addTexture("colorTextures[" + o + "]", noiseTextures[o]);
         }
     }
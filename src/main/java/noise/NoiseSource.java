@@ -0,0 +1,41 @@
+package noise;
+
+/**
+ * Tileable 2D noise: noise(x + per, y, per) == noise(x, y + per, per) == noise(x, y, per)
+ * for non-negative coordinates and 0 < per <= 256. Values are roughly centred on 0 in [-1, 1].
+ */
+public interface NoiseSource {
+
+    float noise(float x, float y, int per);
+
+    /**
+     * Fills out[i * size + j] with noise(i * scale, j * scale, period).
+     */
+    void fillTile(float[] out, int size, float scale, int period);
+
+    /**
+     * Same as fillTile but only for rows [rowStart, rowEnd), written from out[0], so a tile can be
+     * split across threads.
+     */
+    void fillRows(float[] out, int size, float scale, int period, int rowStart, int rowEnd);
+
+    enum Type {
+        PERLIN, SIMPLEX, VALUE;
+
+        public NoiseSource create() {
+            switch (this) {
+                case SIMPLEX: return new SimplexNoise();
+                case VALUE: return new ValueNoise();
+                default: return new Noise();
+            }
+        }
+
+        public NoiseSource create(long seed) {
+            switch (this) {
+                case SIMPLEX: return new SimplexNoise(seed);
+                case VALUE: return new ValueNoise(seed);
+                default: return new Noise(seed);
+            }
+        }
+    }
+}
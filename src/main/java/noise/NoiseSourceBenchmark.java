@@ -0,0 +1,149 @@
+package noise;
+
+public class NoiseSourceBenchmark {
+
+    private static final int SIZE = 256;
+    private static final int OCTAVES = 4;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+    private static final long SEED = 12345L;
+
+    public static void main(String[] args) {
+        System.out.printf("%-8s %10s %8s %8s %8s %8s %9s %6s %6s %6s %9s%n",
+                "source", "Msample/s", "mean", "stddev", "min", "max",
+                "centroid", "low", "mid", "high", "seam");
+
+        for(NoiseSource.Type type : NoiseSource.Type.values()) {
+            NoiseSource source = type.create(SEED);
+            float[] tile = new float[SIZE * SIZE];
+
+            // Throughput over the octave set used by the game
+            for(int n=0; n<WARMUP; ++n) {
+                fillOctaves(source, tile);
+            }
+            long start = System.nanoTime();
+            for(int n=0; n<ITERATIONS; ++n) {
+                fillOctaves(source, tile);
+            }
+            long nanos = System.nanoTime() - start;
+            double samples = (double) ITERATIONS * OCTAVES * SIZE * SIZE;
+
+            // Statistics on the base octave
+            source.fillTile(tile, SIZE, 1.0f / 32.0f, 8);
+            double mean = 0.0;
+            float min = Float.MAX_VALUE;
+            float max = -Float.MAX_VALUE;
+            for(float v : tile) {
+                mean += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            mean /= tile.length;
+            double variance = 0.0;
+            for(float v : tile) {
+                variance += (v - mean) * (v - mean);
+            }
+            variance /= tile.length;
+
+            double[] bands = spectrum(tile, mean);
+
+            float seam = 0.0f;
+            for(int j=0; j<SIZE; ++j) {
+                float y = j / 32.0f;
+                seam = Math.max(seam, Math.abs(source.noise(8.0f, y, 8) - source.noise(0.0f, y, 8)));
+                seam = Math.max(seam, Math.abs(source.noise(y, 8.0f, 8) - source.noise(y, 0.0f, 8)));
+            }
+
+            System.out.printf("%-8s %10.2f %8.4f %8.4f %8.4f %8.4f %9.2f %6.3f %6.3f %6.3f %9.2e%n",
+                    type, samples / (nanos / 1.0e9) / 1.0e6, mean, Math.sqrt(variance), min, max,
+                    bands[0], bands[1], bands[2], bands[3], seam);
+        }
+        System.out.println("centroid: mean radial frequency in cycles per tile; low/mid/high: energy below 8, below 32 and above");
+    }
+
+    private static void fillOctaves(NoiseSource source, float[] tile) {
+        for(int o=0; o<OCTAVES; ++o) {
+            int pow = (int)Math.pow(2, o);
+            source.fillTile(tile, SIZE, pow / 32.0f, 8 * pow);
+        }
+    }
+
+    // Returns { centroid, low, mid, high } of the radial power spectrum
+    private static double[] spectrum(float[] tile, double mean) {
+        double[] re = new double[SIZE * SIZE];
+        double[] im = new double[SIZE * SIZE];
+        for(int i=0; i<tile.length; ++i) {
+            re[i] = tile[i] - mean;
+        }
+
+        double[] rowRe = new double[SIZE];
+        double[] rowIm = new double[SIZE];
+        for(int pass=0; pass<2; ++pass) {
+            for(int i=0; i<SIZE; ++i) {
+                for(int j=0; j<SIZE; ++j) {
+                    int index = (pass == 0 ? i * SIZE + j : j * SIZE + i);
+                    rowRe[j] = re[index];
+                    rowIm[j] = im[index];
+                }
+                fft(rowRe, rowIm);
+                for(int j=0; j<SIZE; ++j) {
+                    int index = (pass == 0 ? i * SIZE + j : j * SIZE + i);
+                    re[index] = rowRe[j];
+                    im[index] = rowIm[j];
+                }
+            }
+        }
+
+        double total = 0.0, weighted = 0.0, low = 0.0, mid = 0.0, high = 0.0;
+        for(int i=0; i<SIZE; ++i) {
+            int u = (i < SIZE / 2 ? i : i - SIZE);
+            for(int j=0; j<SIZE; ++j) {
+                int v = (j < SIZE / 2 ? j : j - SIZE);
+                double power = re[i * SIZE + j] * re[i * SIZE + j] + im[i * SIZE + j] * im[i * SIZE + j];
+                double radius = Math.sqrt(u * u + v * v);
+                total += power;
+                weighted += power * radius;
+                if(radius < 8.0) {
+                    low += power;
+                }
+                else if(radius < 32.0) {
+                    mid += power;
+                }
+                else {
+                    high += power;
+                }
+            }
+        }
+        return new double[]{ weighted / total, low / total, mid / total, high / total };
+    }
+
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for(int i=1, j=0; i<n; ++i) {
+            int bit = n >> 1;
+            for(; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if(i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for(int len=2; len<=n; len<<=1) {
+            double angle = -2.0 * Math.PI / len;
+            for(int i=0; i<n; i+=len) {
+                for(int k=0; k<len/2; ++k) {
+                    double wr = Math.cos(angle * k);
+                    double wi = Math.sin(angle * k);
+                    int a = i + k;
+                    int b = a + len / 2;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr; im[b] = im[a] - xi;
+                    re[a] += xr; im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package noise;
+
+import com.jogamp.common.nio.Buffers;
+import opengl.GLManager;
+import opengl.GLSampler;
+import opengl.GLTexture;
+import opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class NoiseTextureFactory {
+
+    private static final int BAND_ROWS = 16;
+
+    private GLManager manager;
+    private NoiseSource.Type type;
+    private Long seed;
+    private NoiseCache cache;
+    private ForkJoinPool pool;
+    private Map<String, GLTexture[]> octaveSets;
+    private Map<String, ByteBuffer[]> octaveData;
+
+    public NoiseTextureFactory(GLManager manager) {
+        this(manager, NoiseSource.Type.PERLIN, null, null);
+    }
+
+    public NoiseTextureFactory(GLManager manager, Long seed, NoiseCache cache) {
+        this(manager, NoiseSource.Type.PERLIN, seed, cache);
+    }
+
+    public NoiseTextureFactory(GLManager manager, NoiseSource.Type type, Long seed, NoiseCache cache) {
+        this.manager = manager;
+        this.type = type;
+        this.seed = seed;
+        this.cache = (seed != null ? cache : null);
+        this.pool = new ForkJoinPool();
+        this.octaveSets = new HashMap<>();
+        this.octaveData = new HashMap<>();
+    }
+
+    public GLTexture[] createOctaves(int size, int octaves, GLSampler.EdgeType edge, boolean linear) {
+        String key = size + ":" + octaves + ":" + edge + ":" + linear;
+        GLTexture[] textures = octaveSets.get(key);
+        if(textures != null) {
+            return textures;
+        }
+
+        ByteBuffer[] data = getOctaveData(size, octaves);
+
+        GLSampler sampler = manager.createSampler(edge, linear);
+        textures = new GLTexture[octaves];
+        for(int o=0; o<octaves; ++o) {
+            textures[o] = manager.createTexture(size, size, false, null);
+            textures[o].setSampler(sampler);
+            textures[o].setData(data[o]);
+        }
+
+        octaveSets.put(key, textures);
+        return textures;
+    }
+
+    /**
+     * RGBA8 texel data of an octave set, the same data createOctaves uploads for these parameters.
+     */
+    public ByteBuffer[] getOctaveData(int size, int octaves) {
+        String key = size + ":" + octaves;
+        ByteBuffer[] data = octaveData.get(key);
+        if(data == null) {
+            data = loadOctaves(size, octaves);
+            octaveData.put(key, data);
+        }
+        return data;
+    }
+
+    private ByteBuffer[] loadOctaves(int size, int octaves) {
+        ByteBuffer[] data = new ByteBuffer[octaves];
+        byte[][] generated = new byte[octaves][];
+        List<OctaveBand> tasks = new ArrayList<>();
+        for(int o=0; o<octaves; ++o) {
+            int pow = (int)Math.pow(2, o);
+            if(cache != null) {
+                data[o] = cache.load(type, seed, size, o, 8 * pow);
+                if(data[o] != null) {
+                    continue;
+                }
+            }
+            generated[o] = new byte[size * size * 4];
+            NoiseSource source = (seed != null ? type.create(seed + o) : type.create());
+            tasks.add(new OctaveBand(source, generated[o], size, pow / 32.0f, 8 * pow, 0, size));
+        }
+
+        if(!tasks.isEmpty()) {
+            pool.invoke(new OctaveSet(tasks.toArray(new OctaveBand[tasks.size()])));
+        }
+        GLUtils.logDebug("Noise octaves generated: " + tasks.size() + " / " + octaves);
+
+        for(int o=0; o<octaves; ++o) {
+            if(generated[o] == null) {
+                continue;
+            }
+            if(cache != null) {
+                int pow = (int)Math.pow(2, o);
+                data[o] = cache.store(type, seed, size, o, 8 * pow, generated[o]);
+            }
+            if(data[o] == null) {
+                data[o] = Buffers.newDirectByteBuffer(generated[o].length);
+                data[o].put(generated[o]);
+                data[o].rewind();
+            }
+        }
+        return data;
+    }
+
+    private static class OctaveSet extends RecursiveAction {
+
+        private OctaveBand[] tasks;
+
+        public OctaveSet(OctaveBand[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    private static class OctaveBand extends RecursiveAction {
+
+        private NoiseSource source;
+        private byte[] data;
+        private int size;
+        private float scale;
+        private int period;
+        private int rowStart;
+        private int rowEnd;
+
+        public OctaveBand(NoiseSource source, byte[] data, int size, float scale, int period, int rowStart, int rowEnd) {
+            this.source = source;
+            this.data = data;
+            this.size = size;
+            this.scale = scale;
+            this.period = period;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if(rowEnd - rowStart > BAND_ROWS) {
+                int mid = (rowStart + rowEnd) >>> 1;
+                invokeAll(new OctaveBand(source, data, size, scale, period, rowStart, mid),
+                        new OctaveBand(source, data, size, scale, period, mid, rowEnd));
+                return;
+            }
+
+            float[] values = new float[(rowEnd - rowStart) * size];
+            source.fillRows(values, size, scale, period, rowStart, rowEnd);
+            int offset = rowStart * size * 4;
+            for(int i=0; i<values.length; ++i) {
+                float normalHeight = values[i] * 0.5f + 0.5f;
+                byte val = (byte)(normalHeight * 256.0f);
+                data[offset + i * 4] = val;
+                data[offset + i * 4 + 1] = val;
+                data[offset + i * 4 + 2] = val;
+                data[offset + i * 4 + 3] = (byte)255;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package noise;
+
+import java.util.Random;
+
+/**
+ * Simplex-style noise over the square lattice split along its diagonal, so each sample only sums
+ * three radial kernels and the lattice stays axis aligned for the per period.
+ */
+public class SimplexNoise implements NoiseSource {
+
+    private static final int MAX_PERM = 256;
+    private static final double SCALE = 70.0;
+
+    private int[] perm;
+    private double[] dirX;
+    private double[] dirY;
+
+    public SimplexNoise() {
+        this(new Random());
+    }
+
+    public SimplexNoise(long seed) {
+        this(new Random(seed));
+    }
+
+    private SimplexNoise(Random random) {
+        this.perm = Noise.createPermutation(random);
+
+        this.dirX = new double[MAX_PERM];
+        this.dirY = new double[MAX_PERM];
+        for(int i=0; i<MAX_PERM; ++i) {
+            dirX[i] = Math.cos(i * 2.0 * Math.PI / 256.0);
+            dirY[i] = Math.sin(i * 2.0 * Math.PI / 256.0);
+        }
+    }
+
+    @Override
+    public float noise(float x, float y, int per) {
+        int intX = (int)x;
+        int intY = (int)y;
+        double fx = x - intX;
+        double fy = y - intY;
+        int px0 = perm[intX % per];
+        int px1 = perm[(intX + 1) % per];
+        int py0 = intY % per;
+        int py1 = (intY + 1) % per;
+        return (float)(SCALE * (
+                kernel(fx, fy, perm[px0 + py0]) +
+                (fx >= fy ? kernel(fx - 1, fy, perm[px1 + py0]) : kernel(fx, fy - 1, perm[px0 + py1])) +
+                kernel(fx - 1, fy - 1, perm[px1 + py1])));
+    }
+
+    @Override
+    public void fillTile(float[] out, int size, float scale, int period) {
+        fillRows(out, size, scale, period, 0, size);
+    }
+
+    @Override
+    public void fillRows(float[] out, int size, float scale, int period, int rowStart, int rowEnd) {
+        double[] fy = new double[size];
+        int[] hy0 = new int[size];
+        int[] hy1 = new int[size];
+        for(int j=0; j<size; ++j) {
+            float y = j * scale;
+            int intY = (int)y;
+            fy[j] = y - intY;
+            hy0[j] = intY % period;
+            hy1[j] = (intY + 1) % period;
+        }
+
+        for(int i=rowStart; i<rowEnd; ++i) {
+            float x = i * scale;
+            int intX = (int)x;
+            double fx = x - intX;
+            int px0 = perm[intX % period];
+            int px1 = perm[(intX + 1) % period];
+
+            int offset = (i - rowStart) * size;
+            for(int j=0; j<size; ++j) {
+                double dy = fy[j];
+                double mid = (fx >= dy ? kernel(fx - 1, dy, perm[px1 + hy0[j]]) : kernel(fx, dy - 1, perm[px0 + hy1[j]]));
+                out[offset + j] = (float)(SCALE * (
+                        kernel(fx, dy, perm[px0 + hy0[j]]) + mid + kernel(fx - 1, dy - 1, perm[px1 + hy1[j]])));
+            }
+        }
+    }
+
+    private double kernel(double dx, double dy, int hashed) {
+        double t = 0.5 - dx * dx - dy * dy;
+        if(t <= 0.0) {
+            return 0.0;
+        }
+        t *= t;
+        return t * t * (dx * dirX[hashed] + dy * dirY[hashed]);
+    }
+}
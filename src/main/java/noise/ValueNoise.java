@@ -0,0 +1,88 @@
+package noise;
+
+import java.util.Random;
+
+/**
+ * Hashed value noise: a random value per lattice point, blended with the same quintic fade as Noise.
+ */
+public class ValueNoise implements NoiseSource {
+
+    private static final int MAX_PERM = 256;
+
+    private int[] perm;
+    private double[] values;
+
+    public ValueNoise() {
+        this(new Random());
+    }
+
+    public ValueNoise(long seed) {
+        this(new Random(seed));
+    }
+
+    private ValueNoise(Random random) {
+        this.perm = Noise.createPermutation(random);
+
+        this.values = new double[MAX_PERM];
+        for(int i=0; i<MAX_PERM; ++i) {
+            values[i] = i * 2.0 / (MAX_PERM - 1) - 1.0;
+        }
+    }
+
+    @Override
+    public float noise(float x, float y, int per) {
+        int intX = (int)x;
+        int intY = (int)y;
+        double sx = fade(x - intX);
+        double sy = fade(y - intY);
+        int px0 = perm[intX % per];
+        int px1 = perm[(intX + 1) % per];
+        int py0 = intY % per;
+        int py1 = (intY + 1) % per;
+        double v0 = lerp(values[perm[px0 + py0]], values[perm[px1 + py0]], sx);
+        double v1 = lerp(values[perm[px0 + py1]], values[perm[px1 + py1]], sx);
+        return (float)lerp(v0, v1, sy);
+    }
+
+    @Override
+    public void fillTile(float[] out, int size, float scale, int period) {
+        fillRows(out, size, scale, period, 0, size);
+    }
+
+    @Override
+    public void fillRows(float[] out, int size, float scale, int period, int rowStart, int rowEnd) {
+        double[] sy = new double[size];
+        int[] hy0 = new int[size];
+        int[] hy1 = new int[size];
+        for(int j=0; j<size; ++j) {
+            float y = j * scale;
+            int intY = (int)y;
+            sy[j] = fade(y - intY);
+            hy0[j] = intY % period;
+            hy1[j] = (intY + 1) % period;
+        }
+
+        for(int i=rowStart; i<rowEnd; ++i) {
+            float x = i * scale;
+            int intX = (int)x;
+            double sx = fade(x - intX);
+            int px0 = perm[intX % period];
+            int px1 = perm[(intX + 1) % period];
+
+            int offset = (i - rowStart) * size;
+            for(int j=0; j<size; ++j) {
+                double v0 = lerp(values[perm[px0 + hy0[j]]], values[perm[px1 + hy0[j]]], sx);
+                double v1 = lerp(values[perm[px0 + hy1[j]]], values[perm[px1 + hy1[j]]], sx);
+                out[offset + j] = (float)lerp(v0, v1, sy[j]);
+            }
+        }
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+}
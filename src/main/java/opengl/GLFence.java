@@ -0,0 +1,54 @@
+package opengl;
+
+import com.jogamp.opengl.GL4;
+
+/**
+ * Sync object for the commands issued up to insert(). isSignaled() only polls, it never waits.
+ */
+public class GLFence implements GLObject {
+
+    private long sync;
+
+    public GLFence() {
+        this.sync = 0;
+    }
+
+    @Override
+    public void dispose() {
+        reset();
+    }
+
+    public void insert() {
+        GL4 gl = GLUtils.getGL4();
+
+        reset();
+        sync = gl.glFenceSync(GL4.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        GLUtils.checkError("glFenceSync");
+    }
+
+    public boolean isSignaled() {
+        GL4 gl = GLUtils.getGL4();
+
+        if(sync == 0) {
+            return false;
+        }
+        // Flushes so the fence is guaranteed to be reached eventually
+        int status = gl.glClientWaitSync(sync, GL4.GL_SYNC_FLUSH_COMMANDS_BIT, 0);
+        GLUtils.checkError("glClientWaitSync");
+        return status == GL4.GL_ALREADY_SIGNALED || status == GL4.GL_CONDITION_SATISFIED;
+    }
+
+    public boolean isPending() {
+        return sync != 0;
+    }
+
+    public void reset() {
+        GL4 gl = GLUtils.getGL4();
+
+        if(sync != 0) {
+            gl.glDeleteSync(sync);
+            GLUtils.checkError("glDeleteSync");
+            sync = 0;
+        }
+    }
+}
@@ -56,8 +56,15 @@ public class GLFrameBuffer implements GLObject {
         colorTextures.put(binding, texture);
 
         bind();
-        gl.glFramebufferTexture2D(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0 + binding, GL.GL_TEXTURE_2D, texture.getGLTextureId(), 0);
-        GLUtils.checkError("glFramebufferTexture2D");
+        if(texture.isLayered()) {
+            // All layers, the layer is picked with gl_Layer in a geometry shader
+            GLUtils.getGL4().glFramebufferTexture(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0 + binding, texture.getGLTextureId(), 0);
+            GLUtils.checkError("glFramebufferTexture");
+        }
+        else {
+            gl.glFramebufferTexture2D(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0 + binding, GL.GL_TEXTURE_2D, texture.getGLTextureId(), 0);
+            GLUtils.checkError("glFramebufferTexture2D");
+        }
 
         IntBuffer colorAttachments = Buffers.newDirectIntBuffer(colorTextures.size());
         for(Integer key : colorTextures.keySet()) {
@@ -2,6 +2,7 @@ package opengl;
 
 import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL3;
 import utils.DataFormat;
 
 import java.nio.*;
@@ -48,6 +49,25 @@ public class GLIndexBuffer implements GLObject {
     public void setData(Buffer data) {
         GL gl = GLUtils.getGL();
 
+        bind();
+        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, getByteSize(data), data, GL.GL_STATIC_DRAW);
+        GLUtils.checkError("glBufferData");
+        unbind();
+    }
+
+    /**
+     * Reads the first data.capacity() indices back, data must have the type they were set with.
+     */
+    public void getData(Buffer data) {
+        GL3 gl = GLUtils.getGL3();
+
+        bind();
+        gl.glGetBufferSubData(GL.GL_ELEMENT_ARRAY_BUFFER, 0, getByteSize(data), data);
+        GLUtils.checkError("glGetBufferSubData");
+        unbind();
+    }
+
+    private static long getByteSize(Buffer data) {
         long size = data.capacity();
         if(data instanceof ShortBuffer) {
             size *= 2;
@@ -58,11 +78,7 @@ public class GLIndexBuffer implements GLObject {
         else if(data instanceof LongBuffer || data instanceof DoubleBuffer) {
             size *= 8;
         }
-
-        bind();
-        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, size, data, GL.GL_STATIC_DRAW);
-        GLUtils.checkError("glBufferData");
-        unbind();
+        return size;
     }
 
     public void setCount(int count) {
@@ -18,6 +18,7 @@ import java.util.List;
 public class GLManager {
 
     private List<GLObject> glObjects;
+    private GridMeshCache gridMeshCache;
 
     public GLManager() {
         this.glObjects = new ArrayList<>();
@@ -35,12 +36,25 @@ public class GLManager {
         return frameBuffer;
     }
 
+    public GLFence createFence() {
+        GLFence fence = new GLFence();
+        glObjects.add(fence);
+        return fence;
+    }
+
     public GLIndexBuffer createIndexBuffer() {
         GLIndexBuffer indexBuffer = new GLIndexBuffer();
         glObjects.add(indexBuffer);
         return indexBuffer;
     }
 
+    public GLPixelBuffer createPixelBuffer(long size) {
+        GLPixelBuffer pixelBuffer = new GLPixelBuffer();
+        pixelBuffer.init(size);
+        glObjects.add(pixelBuffer);
+        return pixelBuffer;
+    }
+
     public GLSampler createSampler(GLSampler.EdgeType edge, boolean linear) {
         GLSampler sampler = new GLSampler();
         sampler.init(edge, linear);
@@ -62,6 +76,49 @@ public class GLManager {
         return shader;
     }
 
+    /**
+     * The defines are added to every stage like in createComputeShader. The geometry file may be null.
+     */
+    public GLShader createShader(String vertexFile, String geometryFile, String fragmentFile, String... defines) {
+        GLShader shader = new GLShader();
+        shader.init(addDefines(readFile(vertexFile), defines),
+                (geometryFile != null ? addDefines(readFile(geometryFile), defines) : null),
+                addDefines(readFile(fragmentFile), defines));
+        glObjects.add(shader);
+        return shader;
+    }
+
+    /**
+     * Vertex, tessellation control and evaluation, and fragment stage. Draw with GL_PATCHES.
+     */
+    public GLShader createTessellationShader(String vertexFile, String tessControlFile, String tessEvaluationFile,
+                                             String fragmentFile, String... defines) {
+        GLShader shader = new GLShader();
+        shader.init(addDefines(readFile(vertexFile), defines), addDefines(readFile(tessControlFile), defines),
+                addDefines(readFile(tessEvaluationFile), defines), null, addDefines(readFile(fragmentFile), defines));
+        glObjects.add(shader);
+        return shader;
+    }
+
+    /**
+     * Each define ("NAME VALUE") is inserted as a #define right after the #version line.
+     */
+    public GLShader createComputeShader(String computeFile, String... defines) {
+        GLShader shader = new GLShader();
+        shader.initCompute(addDefines(readFile(computeFile), defines));
+        glObjects.add(shader);
+        return shader;
+    }
+
+    private String addDefines(String src, String... defines) {
+        StringBuilder header = new StringBuilder();
+        for(String define : defines) {
+            header.append("#define ").append(define).append('\n');
+        }
+        int versionEnd = src.indexOf('\n', src.indexOf("#version")) + 1;
+        return src.substring(0, versionEnd) + header + src.substring(versionEnd);
+    }
+
     public GLTexture createTexture(int width, int height, boolean isDepth, Buffer data) {
         GLTexture texture = new GLTexture();
         texture.init(width, height, isDepth, data);
@@ -76,6 +133,27 @@ public class GLManager {
         return texture;
     }
 
+    public GLTexture createTexture(int width, int height, int internalFormat, Buffer data) {
+        GLTexture texture = new GLTexture();
+        texture.initFloat(width, height, internalFormat, data);
+        glObjects.add(texture);
+        return texture;
+    }
+
+    public GLTextureArray createTextureArray32f(int width, int height, int layers, Buffer data) {
+        GLTextureArray texture = new GLTextureArray();
+        texture.init32f(width, height, layers, data);
+        glObjects.add(texture);
+        return texture;
+    }
+
+    public GLTextureArray createTextureArray(int width, int height, int layers, int internalFormat, Buffer data) {
+        GLTextureArray texture = new GLTextureArray();
+        texture.initFloat(width, height, layers, internalFormat, data);
+        glObjects.add(texture);
+        return texture;
+    }
+
     public GLTextureCube createTextureCube(int width, int height, Buffer[] data) {
         GLTextureCube texture = new GLTextureCube();
         texture.init(width, height, data);
@@ -83,6 +161,12 @@ public class GLManager {
         return texture;
     }
 
+    public GLTimerQuery createTimerQuery() {
+        GLTimerQuery query = new GLTimerQuery();
+        glObjects.add(query);
+        return query;
+    }
+
     public GLUniformBuffer createUniformBuffer() {
         GLUniformBuffer uniformBuffer = new GLUniformBuffer();
         glObjects.add(uniformBuffer);
@@ -102,6 +186,16 @@ public class GLManager {
         return vertexBuffer;
     }
 
+    /**
+     * Grids shared by everything drawn with this manager, their buffers are disposed with it.
+     */
+    public GridMeshCache getGridMeshCache() {
+        if(gridMeshCache == null) {
+            gridMeshCache = new GridMeshCache(this);
+        }
+        return gridMeshCache;
+    }
+
     public void clear() {
         GL gl = GLUtils.getGL();
 
@@ -0,0 +1,90 @@
+package opengl;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GL4;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * GL_PIXEL_PACK_BUFFER for asynchronous readbacks: while it is bound, glReadPixels and
+ * glGetTexImage write into it and return without waiting for the GPU.
+ */
+public class GLPixelBuffer implements GLObject {
+
+    private int bufferId;
+    private long size;
+
+    public GLPixelBuffer() {
+        GL gl = GLUtils.getGL();
+
+        IntBuffer buffer = Buffers.newDirectIntBuffer(1);
+        gl.glGenBuffers(1, buffer);
+        GLUtils.checkError("glGenBuffers");
+        this.bufferId = buffer.get();
+        this.size = 0;
+    }
+
+    public void init(long size) {
+        GL gl = GLUtils.getGL();
+
+        this.size = size;
+
+        bind();
+        gl.glBufferData(GL2.GL_PIXEL_PACK_BUFFER, size, null, GL2.GL_STREAM_READ);
+        GLUtils.checkError("glBufferData");
+        unbind();
+    }
+
+    @Override
+    public void dispose() {
+        GL gl = GLUtils.getGL();
+
+        if(bufferId != 0) {
+            gl.glDeleteBuffers(1, new int[]{ bufferId }, 0);
+            GLUtils.checkError("glDeleteBuffers");
+        }
+    }
+
+    public void bind() {
+        GL gl = GLUtils.getGL();
+
+        gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, bufferId);
+        GLUtils.checkError("glBindBuffer");
+    }
+
+    public void unbind() {
+        GL gl = GLUtils.getGL();
+
+        gl.glBindBuffer(GL2.GL_PIXEL_PACK_BUFFER, 0);
+        GLUtils.checkError("glBindBuffer");
+    }
+
+    /**
+     * Maps the whole buffer for reading, expects the buffer to be bound. Only valid until unmap().
+     */
+    public ByteBuffer map() {
+        GL4 gl = GLUtils.getGL4();
+
+        ByteBuffer data = gl.glMapBufferRange(GL2.GL_PIXEL_PACK_BUFFER, 0, size, GL.GL_MAP_READ_BIT);
+        GLUtils.checkError("glMapBufferRange");
+        return data;
+    }
+
+    public void unmap() {
+        GL4 gl = GLUtils.getGL4();
+
+        gl.glUnmapBuffer(GL2.GL_PIXEL_PACK_BUFFER);
+        GLUtils.checkError("glUnmapBuffer");
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getGLBufferId() {
+        return bufferId;
+    }
+}
@@ -20,6 +20,8 @@ public class GLShader implements GLObject {
     private int programId;
     private Map<Integer, GLUniformBuffer> uniformBuffers;
     private Map<Integer, GLTexture> textures;
+    private Map<Integer, GLTexture> images;
+    private Map<Integer, Integer> imageAccess;
 
     public GLShader() {
         GL2 gl = GLUtils.getGL2();
@@ -29,9 +31,19 @@ public class GLShader implements GLObject {
 
         this.uniformBuffers = new HashMap<>();
         this.textures = new HashMap<>();
+        this.images = new HashMap<>();
+        this.imageAccess = new HashMap<>();
     }
 
     public void init(String vertexShaderSrc, String geometryShaderSrc, String fragmentShaderSrc) {
+        init(vertexShaderSrc, null, null, geometryShaderSrc, fragmentShaderSrc);
+    }
+
+    /**
+     * Both tessellation stages or neither, the geometry stage may be null as well.
+     */
+    public void init(String vertexShaderSrc, String tessControlShaderSrc, String tessEvaluationShaderSrc,
+                     String geometryShaderSrc, String fragmentShaderSrc) {
         GL2 gl = GLUtils.getGL2();
 
         int vertexShaderId = compileShader(vertexShaderSrc, GL2.GL_VERTEX_SHADER);
@@ -42,6 +54,18 @@ public class GLShader implements GLObject {
         gl.glAttachShader(programId, fragmentShaderId);
         GLUtils.checkError("glAttachShader");
 
+        int tessControlShaderId = 0;
+        int tessEvaluationShaderId = 0;
+        if(tessControlShaderSrc != null) {
+            tessControlShaderId = compileShader(tessControlShaderSrc, GL4.GL_TESS_CONTROL_SHADER);
+            gl.glAttachShader(programId, tessControlShaderId);
+            GLUtils.checkError("glAttachShader");
+
+            tessEvaluationShaderId = compileShader(tessEvaluationShaderSrc, GL4.GL_TESS_EVALUATION_SHADER);
+            gl.glAttachShader(programId, tessEvaluationShaderId);
+            GLUtils.checkError("glAttachShader");
+        }
+
         int geometryShaderId = 0;
         if(geometryShaderSrc != null) {
             geometryShaderId = compileShader(geometryShaderSrc, GL3.GL_GEOMETRY_SHADER);
@@ -49,25 +73,7 @@ public class GLShader implements GLObject {
             GLUtils.checkError("glAttachShader");
         }
 
-        gl.glLinkProgram(programId);
-        GLUtils.checkError("glLinkProgram");
-
-        IntBuffer intBuffer = Buffers.newDirectIntBuffer(1);
-        gl.glGetProgramiv(programId, GL2.GL_LINK_STATUS, intBuffer);
-        GLUtils.checkError("glGetProgramiv");
-        if(intBuffer.get(0) == GL.GL_FALSE) {
-            gl.glGetProgramiv(programId, GL2.GL_INFO_LOG_LENGTH, intBuffer);
-            GLUtils.checkError("glGetProgramiv");
-            int length = intBuffer.get(0);
-            if(length > 0) {
-                ByteBuffer infoLog = Buffers.newDirectByteBuffer(length);
-                gl.glGetProgramInfoLog(programId, infoLog.limit(), intBuffer, infoLog);
-                GLUtils.checkError("glGetProgramInfoLog");
-                byte[] infoLogData = new byte[length];
-                infoLog.get(infoLogData);
-                GLUtils.logError("Shader link error: " + new String(infoLogData));
-            }
-        }
+        linkProgram();
 
         gl.glDeleteShader(vertexShaderId);
         GLUtils.checkError("glDeleteShader");
@@ -75,12 +81,33 @@ public class GLShader implements GLObject {
         gl.glDeleteShader(fragmentShaderId);
         GLUtils.checkError("glDeleteShader");
 
+        if(tessControlShaderSrc != null) {
+            gl.glDeleteShader(tessControlShaderId);
+            GLUtils.checkError("glDeleteShader");
+
+            gl.glDeleteShader(tessEvaluationShaderId);
+            GLUtils.checkError("glDeleteShader");
+        }
+
         if(geometryShaderSrc != null) {
             gl.glDeleteShader(geometryShaderId);
             GLUtils.checkError("glDeleteShader");
         }
     }
 
+    public void initCompute(String computeShaderSrc) {
+        GL2 gl = GLUtils.getGL2();
+
+        int computeShaderId = compileShader(computeShaderSrc, GL4.GL_COMPUTE_SHADER);
+        gl.glAttachShader(programId, computeShaderId);
+        GLUtils.checkError("glAttachShader");
+
+        linkProgram();
+
+        gl.glDeleteShader(computeShaderId);
+        GLUtils.checkError("glDeleteShader");
+    }
+
     @Override
     public void dispose() {
         GL2 gl = GLUtils.getGL2();
@@ -103,6 +130,7 @@ public class GLShader implements GLObject {
         }
 
         updateTextures();
+        updateImages();
     }
 
     public void updateTextures() {
@@ -125,6 +153,17 @@ public class GLShader implements GLObject {
         }
     }
 
+    public void updateImages() {
+        GL4 gl = GLUtils.getGL4();
+
+        for(Map.Entry<Integer, GLTexture> entry : images.entrySet()) {
+            GLTexture texture = entry.getValue();
+            gl.glBindImageTexture(entry.getKey(), texture.getGLTextureId(), 0, texture.isLayered(), 0,
+                    imageAccess.get(entry.getKey()), texture.getInternalFormat());
+            GLUtils.checkError("glBindImageTexture");
+        }
+    }
+
     public void unbind() {
         GL2 gl = GLUtils.getGL2();
 
@@ -132,6 +171,16 @@ public class GLShader implements GLObject {
         GLUtils.checkError("glUseProgram");
     }
 
+    public void setUniform1i(String name, int value) {
+        GL2 gl = GLUtils.getGL2();
+
+        int location = gl.glGetUniformLocation(programId, name);
+        GLUtils.checkError("glGetUniformLocation");
+
+        gl.glUniform1i(location, value);
+        GLUtils.checkError("glUniform1i");
+    }
+
     public void setUniform1f(String name, float value) {
         GL2 gl = GLUtils.getGL2();
 
@@ -187,6 +236,35 @@ public class GLShader implements GLObject {
         textures.put(location, texture);
     }
 
+    public void addImage(int binding, GLTexture texture, int access) {
+        images.put(binding, texture);
+        imageAccess.put(binding, access);
+    }
+
+    private void linkProgram() {
+        GL2 gl = GLUtils.getGL2();
+
+        gl.glLinkProgram(programId);
+        GLUtils.checkError("glLinkProgram");
+
+        IntBuffer intBuffer = Buffers.newDirectIntBuffer(1);
+        gl.glGetProgramiv(programId, GL2.GL_LINK_STATUS, intBuffer);
+        GLUtils.checkError("glGetProgramiv");
+        if(intBuffer.get(0) == GL.GL_FALSE) {
+            gl.glGetProgramiv(programId, GL2.GL_INFO_LOG_LENGTH, intBuffer);
+            GLUtils.checkError("glGetProgramiv");
+            int length = intBuffer.get(0);
+            if(length > 0) {
+                ByteBuffer infoLog = Buffers.newDirectByteBuffer(length);
+                gl.glGetProgramInfoLog(programId, infoLog.limit(), intBuffer, infoLog);
+                GLUtils.checkError("glGetProgramInfoLog");
+                byte[] infoLogData = new byte[length];
+                infoLog.get(infoLogData);
+                GLUtils.logError("Shader link error: " + new String(infoLogData));
+            }
+        }
+    }
+
     private int compileShader(String shaderSrc, int shaderType) {
         GL2 gl = GLUtils.getGL2();
 
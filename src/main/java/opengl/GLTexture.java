@@ -9,10 +9,13 @@ import java.nio.IntBuffer;
 
 public class GLTexture implements GLObject {
 
-    private int textureId;
-    private int width;
-    private int height;
+    protected int textureId;
+    protected int width;
+    protected int height;
     private boolean isDepth;
+    protected int internalFormat;
+    protected int format;
+    protected int type;
     private GLSampler sampler;
 
     public GLTexture() {
@@ -26,6 +29,9 @@ public class GLTexture implements GLObject {
         this.width = 0;
         this.height = 0;
         this.isDepth = false;
+        this.internalFormat = GL.GL_RGBA;
+        this.format = GL.GL_RGBA;
+        this.type = GL.GL_UNSIGNED_BYTE;
         this.sampler = null;
     }
 
@@ -36,29 +42,36 @@ public class GLTexture implements GLObject {
         this.height = height;
         this.isDepth = isDepth;
 
-        int iformat = (isDepth ? GL.GL_DEPTH_COMPONENT24 : GL.GL_RGBA);
-        int format = (isDepth ? GL2.GL_DEPTH_COMPONENT : GL.GL_RGBA);
-        int type = (isDepth ? GL.GL_FLOAT : GL.GL_UNSIGNED_BYTE);
+        this.internalFormat = (isDepth ? GL.GL_DEPTH_COMPONENT24 : GL.GL_RGBA);
+        this.format = (isDepth ? GL2.GL_DEPTH_COMPONENT : GL.GL_RGBA);
+        this.type = (isDepth ? GL.GL_FLOAT : GL.GL_UNSIGNED_BYTE);
 
         bind();
-        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, iformat, width, height, 0, format, type, data);
+        gl.glTexImage2D(getTarget(), 0, internalFormat, width, height, 0, format, type, data);
         GLUtils.checkError("glTexImage2D");
         unbind();
     }
 
     public void init32f(int width, int height, Buffer data) {
+        initFloat(width, height, GL.GL_RGBA32F, data);
+    }
+
+    /**
+     * Float texture of any internal format (e.g. GL_RGBA16F), data is given as RGBA floats.
+     */
+    public void initFloat(int width, int height, int internalFormat, Buffer data) {
         GL gl = GLUtils.getGL();
 
         this.width = width;
         this.height = height;
         this.isDepth = false;
 
-        int iformat = GL.GL_RGBA32F;
-        int format = GL.GL_RGBA;
-        int type = GL.GL_FLOAT;
+        this.internalFormat = internalFormat;
+        this.format = GL.GL_RGBA;
+        this.type = GL.GL_FLOAT;
 
         bind();
-        gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, iformat, width, height, 0, format, type, data);
+        gl.glTexImage2D(getTarget(), 0, internalFormat, width, height, 0, format, type, data);
         GLUtils.checkError("glTexImage2D");
         unbind();
     }
@@ -74,19 +87,53 @@ public class GLTexture implements GLObject {
     }
 
     public void setData(Buffer data) {
+        setData(data, format, type);
+    }
+
+    /**
+     * Uploads data given in another client format or type, e.g. half floats into a 32-bit texture.
+     */
+    public void setData(Buffer data, int format, int type) {
         GL gl = GLUtils.getGL();
 
         if(width > 0 && height > 0) {
-            int format = (isDepth ? GL2.GL_DEPTH_COMPONENT : GL.GL_RGBA);
-            int type = (isDepth ? GL.GL_FLOAT : GL.GL_UNSIGNED_BYTE);
-
             bind();
-            gl.glTexSubImage2D(GL.GL_TEXTURE_2D, 0, 0, 0, width, height, format, type, data);
+            gl.glTexSubImage2D(getTarget(), 0, 0, 0, width, height, format, type, data);
             GLUtils.checkError("glTexSubImage2D");
             unbind();
         }
     }
 
+    public void getData(Buffer data) {
+        GL2 gl = GLUtils.getGL2();
+
+        bind();
+        gl.glGetTexImage(getTarget(), 0, format, type, data);
+        GLUtils.checkError("glGetTexImage");
+        unbind();
+    }
+
+    /**
+     * Reads the given mip level into the bound GLPixelBuffer at offset, without waiting.
+     */
+    public void getData(int level, long offset) {
+        GL2 gl = GLUtils.getGL2();
+
+        bind();
+        gl.glGetTexImage(getTarget(), level, format, type, offset);
+        GLUtils.checkError("glGetTexImage");
+        unbind();
+    }
+
+    public void generateMipmaps() {
+        GL gl = GLUtils.getGL();
+
+        bind();
+        gl.glGenerateMipmap(getTarget());
+        GLUtils.checkError("glGenerateMipmap");
+        unbind();
+    }
+
     public void setSampler(GLSampler sampler) {
         this.sampler = sampler;
     }
@@ -98,17 +145,37 @@ public class GLTexture implements GLObject {
     public void bind() {
         GL gl = GLUtils.getGL();
 
-        gl.glBindTexture(GL.GL_TEXTURE_2D, textureId);
+        gl.glBindTexture(getTarget(), textureId);
         GLUtils.checkError("glBindTexture");
     }
 
     public void unbind() {
         GL gl = GLUtils.getGL();
 
-        gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+        gl.glBindTexture(getTarget(), 0);
         GLUtils.checkError("glBindTexture");
     }
 
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getInternalFormat() {
+        return internalFormat;
+    }
+
+    public boolean isLayered() {
+        return false;
+    }
+
+    protected int getTarget() {
+        return GL.GL_TEXTURE_2D;
+    }
+
     public int getGLTextureId() {
         return textureId;
     }
@@ -0,0 +1,84 @@
+package opengl;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GL4;
+
+import java.nio.Buffer;
+
+public class GLTextureArray extends GLTexture {
+
+    private int layers;
+
+    public GLTextureArray() {
+        super();
+
+        this.layers = 0;
+    }
+
+    @Override
+    public void init(int width, int height, boolean isDepth, Buffer data) {
+        throw new IllegalStateException("Texture arrays need a layer count");
+    }
+
+    @Override
+    public void init32f(int width, int height, Buffer data) {
+        throw new IllegalStateException("Texture arrays need a layer count");
+    }
+
+    @Override
+    public void initFloat(int width, int height, int internalFormat, Buffer data) {
+        throw new IllegalStateException("Texture arrays need a layer count");
+    }
+
+    public void init32f(int width, int height, int layers, Buffer data) {
+        initFloat(width, height, layers, GL.GL_RGBA32F, data);
+    }
+
+    /**
+     * Float texture of any internal format (e.g. GL_RG16F), data is given as RGBA floats and
+     * extra channels are dropped.
+     */
+    public void initFloat(int width, int height, int layers, int internalFormat, Buffer data) {
+        GL4 gl = GLUtils.getGL4();
+
+        this.width = width;
+        this.height = height;
+        this.layers = layers;
+
+        this.internalFormat = internalFormat;
+        this.format = GL.GL_RGBA;
+        this.type = GL.GL_FLOAT;
+
+        bind();
+        gl.glTexImage3D(GL2.GL_TEXTURE_2D_ARRAY, 0, internalFormat, width, height, layers, 0, format, type, data);
+        GLUtils.checkError("glTexImage3D");
+        unbind();
+    }
+
+    @Override
+    public void setData(Buffer data, int format, int type) {
+        GL4 gl = GLUtils.getGL4();
+
+        if(width > 0 && height > 0 && layers > 0) {
+            bind();
+            gl.glTexSubImage3D(GL2.GL_TEXTURE_2D_ARRAY, 0, 0, 0, 0, width, height, layers, format, type, data);
+            GLUtils.checkError("glTexSubImage3D");
+            unbind();
+        }
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    @Override
+    public boolean isLayered() {
+        return true;
+    }
+
+    @Override
+    protected int getTarget() {
+        return GL2.GL_TEXTURE_2D_ARRAY;
+    }
+}
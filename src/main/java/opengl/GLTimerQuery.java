@@ -0,0 +1,82 @@
+package opengl;
+
+import com.jogamp.opengl.GL4;
+
+/**
+ * GL_TIME_ELAPSED query ring. Results are collected a few frames later when a query slot is
+ * reused, so reading them never stalls the pipeline.
+ */
+public class GLTimerQuery implements GLObject {
+
+    private static final int QUERIES = 4;
+
+    private int[] queryIds;
+    private boolean[] pending;
+    private int current;
+
+    private long lastNanos;
+    private long totalNanos;
+    private int samples;
+
+    public GLTimerQuery() {
+        GL4 gl = GLUtils.getGL4();
+
+        this.queryIds = new int[QUERIES];
+        gl.glGenQueries(QUERIES, queryIds, 0);
+        GLUtils.checkError("glGenQueries");
+        this.pending = new boolean[QUERIES];
+        this.current = 0;
+        this.lastNanos = -1;
+    }
+
+    @Override
+    public void dispose() {
+        GL4 gl = GLUtils.getGL4();
+
+        gl.glDeleteQueries(QUERIES, queryIds, 0);
+        GLUtils.checkError("glDeleteQueries");
+    }
+
+    public void begin() {
+        GL4 gl = GLUtils.getGL4();
+
+        if(pending[current]) {
+            long[] result = new long[1];
+            gl.glGetQueryObjectui64v(queryIds[current], GL4.GL_QUERY_RESULT, result, 0);
+            GLUtils.checkError("glGetQueryObjectui64v");
+            lastNanos = result[0];
+            totalNanos += lastNanos;
+            samples++;
+        }
+
+        gl.glBeginQuery(GL4.GL_TIME_ELAPSED, queryIds[current]);
+        GLUtils.checkError("glBeginQuery");
+    }
+
+    public void end() {
+        GL4 gl = GLUtils.getGL4();
+
+        gl.glEndQuery(GL4.GL_TIME_ELAPSED);
+        GLUtils.checkError("glEndQuery");
+
+        pending[current] = true;
+        current = (current + 1) % QUERIES;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public double getAverageMillis() {
+        return (samples > 0 ? totalNanos / (double) samples / 1.0e6 : 0.0);
+    }
+
+    public void reset() {
+        totalNanos = 0;
+        samples = 0;
+    }
+}
@@ -24,6 +24,12 @@ public class GLUtils {
         return gl;
     }
 
+    public static boolean supportsComputeShaders() {
+        GL gl = getGL();
+        return gl.getContext().getGLVersionNumber().compareTo(GLContext.Version4_3) >= 0 ||
+                gl.isExtensionAvailable("GL_ARB_compute_shader");
+    }
+
     public static void checkError(String msg) {
         GL gl = getGL();
         switch (gl.glGetError()) {
@@ -0,0 +1,290 @@
+package opengl;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2GL3;
+import com.jogamp.opengl.GL3;
+import com.jogamp.opengl.GL4;
+import org.joml.Vector2f;
+import utils.DataFormat;
+
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Regular grid over [0, 1] in x and z, shared through the GridMeshCache. Vertex (x, z) is
+ * x * (segmentsZ + 1) + z, so a row of constant x is contiguous.
+ *
+ * Indices are 16-bit where the vertices allow it. Larger grids are cut into bands of rows that
+ * each fit 16-bit indices, all bands share the indices of the first one and are drawn with a base
+ * vertex. Without a vertex buffer the shader computes the positions from gl_VertexID
+ * (GRID_VERTEX_ID), see setUniforms().
+ *
+ * Strips and patches go through the rows in narrow stripes, so the vertices a strip shares with
+ * the previous one are still in the post-transform cache.
+ */
+public class GridMesh {
+
+    public enum Layout {
+        // One triangle strip per row of cells
+        STRIPS,
+        // Strips quadrant after quadrant, so a quarter of the grid can be drawn alone
+        QUADRANT_STRIPS,
+        // Four corners per cell for GL_PATCHES, (x0, z0), (x1, z0), (x1, z1), (x0, z1)
+        PATCHES
+    }
+
+    private static final int SHORT_RESTART = 0xFFFF;
+    private static final int INT_RESTART = 0xFFFFFFFF;
+    // Cells per stripe, the row of vertices shared with the next strip stays in FIFO and LRU
+    // post-transform caches of 16 entries and more, see VertexCacheReport
+    public static final int STRIPE_CELLS = 7;
+
+    private int segmentsX;
+    private int segmentsZ;
+    private Layout layout;
+
+    private GLVertexArray vao;
+    private GLIndexBuffer ibo;
+
+    private boolean shortIndices;
+    private int bandRows;
+    private int bandCount;
+    private long byteSize;
+
+    GridMesh(GLManager manager, int segmentsX, int segmentsZ, Layout layout, boolean vertexId) {
+        this.segmentsX = segmentsX;
+        this.segmentsZ = segmentsZ;
+        this.layout = layout;
+
+        int rowLength = segmentsZ + 1;
+        int vertices = (segmentsX + 1) * rowLength;
+        // The largest index stays below the restart index
+        if(vertices <= SHORT_RESTART) {
+            shortIndices = true;
+            bandRows = segmentsX;
+        }
+        else if(layout != Layout.QUADRANT_STRIPS && 2 * rowLength <= SHORT_RESTART) {
+            shortIndices = true;
+            bandRows = SHORT_RESTART / rowLength - 1;
+        }
+        else {
+            shortIndices = false;
+            bandRows = segmentsX;
+        }
+
+        vao = manager.createVertexArray();
+        if(!vertexId) {
+            FloatBuffer positions = Buffers.newDirectFloatBuffer(vertices * 3);
+            for(int i=0; i <= segmentsX; ++i) {
+                float x = (float) i / (float) segmentsX;
+                for(int j=0; j <= segmentsZ; ++j) {
+                    float z = (float) j / (float) segmentsZ;
+                    positions.put(x).put(0.0f).put(z);
+                }
+            }
+            positions.rewind();
+
+            GLVertexBuffer vbo = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 3));
+            vbo.setData(positions);
+            vao.addVertexBuffer(vbo);
+            byteSize = vertices * 12L;
+        }
+
+        // A band of fewer rows at the end has its own indices
+        int remainderRows = segmentsX % bandRows;
+        IntBuffer indices = createIndices(bandRows, segmentsZ, layout, STRIPE_CELLS, getRestartIndex());
+        bandCount = indices.limit();
+        if(remainderRows != 0) {
+            IntBuffer remainder = createIndices(remainderRows, segmentsZ, layout, STRIPE_CELLS, getRestartIndex());
+            IntBuffer all = Buffers.newDirectIntBuffer(indices.limit() + remainder.limit());
+            all.put(indices).put(remainder).flip();
+            indices = all;
+        }
+
+        Buffer data = indices;
+        if(shortIndices) {
+            ShortBuffer shorts = Buffers.newDirectShortBuffer(indices.limit());
+            while(indices.hasRemaining()) {
+                shorts.put((short) indices.get());
+            }
+            shorts.flip();
+            data = shorts;
+        }
+
+        ibo = manager.createIndexBuffer();
+        ibo.setData(data);
+        ibo.setCount(data.limit());
+        byteSize += (long) data.limit() * getIndexSize();
+    }
+
+    /**
+     * Indices of rows x segmentsZ cells in the given layout. Strips and patches go through the
+     * grid in stripes of stripeCells along z, segmentsZ or more gives plain row order.
+     */
+    public static IntBuffer createIndices(int rows, int segmentsZ, Layout layout, int stripeCells, int restartIndex) {
+        int rowLength = segmentsZ + 1;
+        IntBuffer indices;
+        if(layout == Layout.QUADRANT_STRIPS) {
+            int halfX = rows / 2;
+            int halfZ = segmentsZ / 2;
+            indices = Buffers.newDirectIntBuffer(4 * halfX * (2 * (halfZ + 1) + 1));
+            for(int c=0; c<4; ++c) {
+                int startX = (c & 1) * halfX;
+                int startZ = (c >> 1) * halfZ;
+                for(int i=startX; i<startX + halfX; ++i) {
+                    addStrip(indices, rowLength, i, startZ, halfZ, restartIndex);
+                }
+            }
+        }
+        else if(layout == Layout.STRIPS) {
+            int stripes = (segmentsZ + stripeCells - 1) / stripeCells;
+            indices = Buffers.newDirectIntBuffer((rows + 1) * (2 * (segmentsZ + stripes) + stripes));
+            for(int startZ=0; startZ<segmentsZ; startZ+=stripeCells) {
+                // Loads the first row into the cache without triangles, otherwise the first strip
+                // misses both rows and pushes out what the next one needs
+                for(int j=startZ; j<=Math.min(startZ + stripeCells, segmentsZ); ++j) {
+                    indices.put(j).put(restartIndex);
+                }
+                for(int i=0; i<rows; ++i) {
+                    addStrip(indices, rowLength, i, startZ, Math.min(stripeCells, segmentsZ - startZ), restartIndex);
+                }
+            }
+        }
+        else {
+            indices = Buffers.newDirectIntBuffer(rows * segmentsZ * 4);
+            for(int startZ=0; startZ<segmentsZ; startZ+=stripeCells) {
+                for(int i=0; i<rows; ++i) {
+                    for(int j=startZ; j<Math.min(startZ + stripeCells, segmentsZ); ++j) {
+                        indices.put(j + i * rowLength).put(j + (i + 1) * rowLength);
+                        indices.put(j + 1 + (i + 1) * rowLength).put(j + 1 + i * rowLength);
+                    }
+                }
+            }
+        }
+        indices.flip();
+        return indices;
+    }
+
+    // Touches the row shared with the previous strip first, so an LRU cache still holds the next
+    // vertex it needs. Walks down z so the triangles wind like the triangle lists they replace.
+    private static void addStrip(IntBuffer indices, int rowLength, int x, int startZ, int length, int restartIndex) {
+        for(int j=startZ + length; j>=startZ; --j) {
+            indices.put(j + x * rowLength).put(j + (x + 1) * rowLength);
+        }
+        indices.put(restartIndex);
+    }
+
+    /**
+     * Binds the mesh for draw() and drawQuarter(), with primitive restart for the strips.
+     */
+    public void bind() {
+        GL3 gl = GLUtils.getGL3();
+
+        vao.bind();
+        ibo.bind();
+        if(layout != Layout.PATCHES) {
+            gl.glEnable(GL2GL3.GL_PRIMITIVE_RESTART);
+            gl.glPrimitiveRestartIndex(getRestartIndex());
+            GLUtils.checkError("glPrimitiveRestartIndex");
+        }
+    }
+
+    public void unbind() {
+        GL3 gl = GLUtils.getGL3();
+
+        if(layout != Layout.PATCHES) {
+            gl.glDisable(GL2GL3.GL_PRIMITIVE_RESTART);
+        }
+        ibo.unbind();
+        vao.unbind();
+    }
+
+    /**
+     * Grid size in segments for GRID_VERTEX_ID, harmless for shaders without it.
+     */
+    public void setUniforms(GLShader shader) {
+        shader.setUniform2f("gridSegments", new Vector2f(segmentsX, segmentsZ));
+    }
+
+    public void draw() {
+        GL3 gl = GLUtils.getGL3();
+
+        if(layout == Layout.QUADRANT_STRIPS) {
+            gl.glDrawElements(getMode(), ibo.getCount(), getIndexType(), 0);
+            GLUtils.checkError("glDrawElements");
+            return;
+        }
+        if(layout == Layout.PATCHES) {
+            GLUtils.getGL4().glPatchParameteri(GL4.GL_PATCH_VERTICES, 4);
+        }
+        int mode = getMode();
+        int type = getIndexType();
+        for(int row=0; row<segmentsX; row+=bandRows) {
+            int baseVertex = row * (segmentsZ + 1);
+            if(row + bandRows <= segmentsX) {
+                gl.glDrawElementsBaseVertex(mode, bandCount, type, 0, baseVertex);
+            }
+            else {
+                gl.glDrawElementsBaseVertex(mode, ibo.getCount() - bandCount, type, (long) bandCount * getIndexSize(), baseVertex);
+            }
+            GLUtils.checkError("glDrawElementsBaseVertex");
+        }
+    }
+
+    /**
+     * Quarter x = c & 1, z = c >> 1 of a QUADRANT_STRIPS grid.
+     */
+    public void drawQuarter(int c) {
+        GL gl = GLUtils.getGL();
+
+        int quarter = ibo.getCount() / 4;
+        gl.glDrawElements(getMode(), quarter, getIndexType(), (long) c * quarter * getIndexSize());
+        GLUtils.checkError("glDrawElements");
+    }
+
+    private int getMode() {
+        return (layout == Layout.PATCHES ? GL4.GL_PATCHES : GL.GL_TRIANGLE_STRIP);
+    }
+
+    private int getRestartIndex() {
+        return (shortIndices ? SHORT_RESTART : INT_RESTART);
+    }
+
+    private int getIndexType() {
+        return (shortIndices ? GL.GL_UNSIGNED_SHORT : GL.GL_UNSIGNED_INT);
+    }
+
+    private int getIndexSize() {
+        return (shortIndices ? 2 : 4);
+    }
+
+    public int getSegmentsX() {
+        return segmentsX;
+    }
+
+    public int getSegmentsZ() {
+        return segmentsZ;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Bytes of the vertex and index buffers.
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Bytes the same grid takes as positions and a 32-bit triangle list, or patch list.
+     */
+    public long getTriangleListByteSize() {
+        long cells = (long) segmentsX * segmentsZ;
+        return (segmentsX + 1L) * (segmentsZ + 1L) * 12L + cells * (layout == Layout.PATCHES ? 4 : 6) * 4L;
+    }
+}
@@ -0,0 +1,42 @@
+package opengl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds every GridMesh once per size and layout, so the terrain and the water share theirs.
+ * With -Dgrid.vertexid=true the grids have no vertex buffer, shaders drawing them need the
+ * GRID_VERTEX_ID define then, see isVertexId().
+ */
+public class GridMeshCache {
+
+    private static final boolean VERTEX_ID = Boolean.getBoolean("grid.vertexid");
+
+    private GLManager manager;
+    private Map<String, GridMesh> meshes;
+
+    GridMeshCache(GLManager manager) {
+        this.manager = manager;
+        this.meshes = new HashMap<>();
+    }
+
+    public GridMesh getGrid(int segments, GridMesh.Layout layout) {
+        return getGrid(segments, segments, layout);
+    }
+
+    public GridMesh getGrid(int segmentsX, int segmentsZ, GridMesh.Layout layout) {
+        String key = segmentsX + "x" + segmentsZ + " " + layout;
+        GridMesh mesh = meshes.get(key);
+        if(mesh == null) {
+            mesh = new GridMesh(manager, segmentsX, segmentsZ, layout, VERTEX_ID);
+            meshes.put(key, mesh);
+            GLUtils.logDebug("Grid " + key + ": " + mesh.getByteSize() / 1024 + " KB, "
+                    + (mesh.getTriangleListByteSize() - mesh.getByteSize()) / 1024 + " KB saved");
+        }
+        return mesh;
+    }
+
+    public boolean isVertexId() {
+        return VERTEX_ID;
+    }
+}
@@ -0,0 +1,74 @@
+package utils;
+
+/**
+ * IEEE 754 binary16 conversions, as stored by GL_HALF_FLOAT data and 16F textures.
+ */
+public class HalfFloat {
+
+    private HalfFloat() {
+    }
+
+    /**
+     * Rounds to nearest even like GL does, overflows to infinity and keeps NaN a (quiet) NaN.
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+
+        if(exponent == 0xFF - 127 + 15) {
+            // Infinity, or NaN with the top payload bits and the quiet bit
+            return (short)(sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >> 13) : 0));
+        }
+        if(exponent >= 31) {
+            return (short)(sign | 0x7C00);
+        }
+        if(exponent <= 0) {
+            if(exponent < -10) {
+                return (short) sign;
+            }
+            // Subnormal
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            return (short)(sign | roundShift(mantissa, shift));
+        }
+
+        // A carry out of the mantissa increments the exponent, up to infinity
+        return (short)(sign | ((exponent << 10) + roundShift(mantissa, 13)));
+    }
+
+    // mantissa >> shift, rounded to nearest even
+    private static int roundShift(int mantissa, int shift) {
+        int result = mantissa >> shift;
+        int remainder = mantissa & ((1 << shift) - 1);
+        int halfway = 1 << (shift - 1);
+        if(remainder > halfway || (remainder == halfway && (result & 1) != 0)) {
+            result++;
+        }
+        return result;
+    }
+
+    public static float toFloat(short half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+
+        if(exponent == 0) {
+            // Subnormal or zero
+            float value = mantissa * 0x1.0p-24f;
+            return (sign != 0 ? -value : value);
+        }
+        if(exponent == 31) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * The value a 16F texture would store.
+     */
+    public static float round(float value) {
+        return toFloat(toHalf(value));
+    }
+}
@@ -0,0 +1,204 @@
+package utils;
+
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Post-transform vertex cache: reordering of triangle lists after Tom Forsyth's linear-speed
+ * vertex cache optimisation, and a FIFO or LRU cache simulation that measures the average cache
+ * miss ratio (ACMR), vertex shader runs per triangle, of any index buffer content.
+ */
+public class VertexCache {
+
+    // Entries of the cache the scores are tuned for, the actual cache may differ
+    private static final int CACHE_SIZE = 32;
+    private static final float CACHE_DECAY_POWER = 1.5f;
+    private static final float LAST_TRIANGLE_SCORE = 0.75f;
+    private static final float VALENCE_BOOST_SCALE = 2.0f;
+    private static final float VALENCE_BOOST_POWER = 0.5f;
+
+    private VertexCache() {
+    }
+
+    /**
+     * Reorders the triangles of indices[offset, offset + count) in place, vertices are below
+     * vertexCount. The triangles and their winding stay the same.
+     */
+    public static void optimize(IntBuffer indices, int offset, int count, int vertexCount) {
+        int triangles = count / 3;
+        int[] source = new int[triangles * 3];
+        for(int i=0; i<source.length; ++i) {
+            source[i] = indices.get(offset + i);
+        }
+
+        // Triangles of each vertex
+        int[] remaining = new int[vertexCount];
+        for(int index : source) {
+            remaining[index]++;
+        }
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for(int v=0; v<vertexCount; ++v) {
+            adjacencyStart[v + 1] = adjacencyStart[v] + remaining[v];
+        }
+        int[] adjacency = new int[source.length];
+        int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+        for(int i=0; i<source.length; ++i) {
+            adjacency[fill[source[i]]++] = i / 3;
+        }
+
+        int[] cachePositions = new int[vertexCount];
+        Arrays.fill(cachePositions, -1);
+        float[] vertexScores = new float[vertexCount];
+        for(int v=0; v<vertexCount; ++v) {
+            vertexScores[v] = getScore(-1, remaining[v]);
+        }
+        boolean[] added = new boolean[triangles];
+
+        // Three more entries for the triangle pushed in before the oldest ones drop out
+        int[] cache = new int[CACHE_SIZE + 3];
+        int[] newCache = new int[CACHE_SIZE + 3];
+        int cacheCount = 0;
+
+        int best = -1;
+        int cursor = 0;
+        for(int out=0; out<triangles; ++out) {
+            if(best < 0) {
+                // Nothing in the cache scores, continue with the next triangle in input order
+                while(added[cursor]) {
+                    cursor++;
+                }
+                best = cursor;
+            }
+
+            int[] corners = { source[best * 3], source[best * 3 + 1], source[best * 3 + 2] };
+            indices.put(offset + out * 3, corners[0]);
+            indices.put(offset + out * 3 + 1, corners[1]);
+            indices.put(offset + out * 3 + 2, corners[2]);
+            added[best] = true;
+
+            int newCount = 0;
+            for(int corner : corners) {
+                remaining[corner]--;
+                // Remove the triangle from the list of the vertex
+                int end = adjacencyStart[corner] + remaining[corner];
+                for(int a=adjacencyStart[corner]; a<=end; ++a) {
+                    if(adjacency[a] == best) {
+                        adjacency[a] = adjacency[end];
+                        break;
+                    }
+                }
+                newCache[newCount++] = corner;
+            }
+            for(int c=0; c<cacheCount; ++c) {
+                int vertex = cache[c];
+                if(vertex != corners[0] && vertex != corners[1] && vertex != corners[2]) {
+                    newCache[newCount++] = vertex;
+                }
+            }
+
+            int[] swap = cache;
+            cache = newCache;
+            newCache = swap;
+            cacheCount = newCount;
+
+            for(int c=0; c<cacheCount; ++c) {
+                int vertex = cache[c];
+                cachePositions[vertex] = (c < CACHE_SIZE ? c : -1);
+                vertexScores[vertex] = getScore(cachePositions[vertex], remaining[vertex]);
+            }
+
+            best = -1;
+            float bestScore = -1.0f;
+            for(int c=0; c<cacheCount; ++c) {
+                int vertex = cache[c];
+                for(int a=adjacencyStart[vertex]; a<adjacencyStart[vertex] + remaining[vertex]; ++a) {
+                    int t = adjacency[a];
+                    float score = vertexScores[source[t * 3]] + vertexScores[source[t * 3 + 1]] + vertexScores[source[t * 3 + 2]];
+                    if(score > bestScore) {
+                        best = t;
+                        bestScore = score;
+                    }
+                }
+            }
+            cacheCount = Math.min(cacheCount, CACHE_SIZE);
+        }
+    }
+
+    private static float getScore(int cachePosition, int remaining) {
+        if(remaining == 0) {
+            return -1.0f;
+        }
+
+        float score = 0.0f;
+        if(cachePosition >= 0) {
+            if(cachePosition < 3) {
+                // The triangle just added, no reason to prefer one of its vertices
+                score = LAST_TRIANGLE_SCORE;
+            }
+            else {
+                float scale = 1.0f / (CACHE_SIZE - 3);
+                score = (float) Math.pow(1.0f - (cachePosition - 3) * scale, CACHE_DECAY_POWER);
+            }
+        }
+        // Vertices with few triangles left are finished first
+        return score + VALENCE_BOOST_SCALE * (float) Math.pow(remaining, -VALENCE_BOOST_POWER);
+    }
+
+    /**
+     * Vertex shader runs per triangle for a cache of the given size, the buffer content from its
+     * position to its limit. Strips are cut by restartIndex, 0xFFFF for 16-bit and -1 for 32-bit
+     * indices. 0.5 is the limit for large regular grids, 3 means no reuse at all.
+     */
+    public static float getACMR(Buffer indices, boolean strip, int restartIndex, int cacheSize, boolean lru) {
+        int[] cache = new int[cacheSize];
+        Arrays.fill(cache, -1);
+        int next = 0;
+
+        long misses = 0;
+        long triangles = 0;
+        int run = 0;
+        for(int i=indices.position(); i<indices.limit(); ++i) {
+            int index = getIndex(indices, i);
+            if(strip && index == restartIndex) {
+                triangles += Math.max(run - 2, 0);
+                run = 0;
+                continue;
+            }
+            run++;
+
+            int hit = -1;
+            for(int c=0; c<cacheSize; ++c) {
+                if(cache[c] == index) {
+                    hit = c;
+                    break;
+                }
+            }
+
+            if(lru) {
+                // Most recent first
+                int from = (hit >= 0 ? hit : cacheSize - 1);
+                System.arraycopy(cache, 0, cache, 1, from);
+                cache[0] = index;
+            }
+            else if(hit < 0) {
+                cache[next] = index;
+                next = (next + 1) % cacheSize;
+            }
+            if(hit < 0) {
+                misses++;
+            }
+        }
+        triangles += (strip ? Math.max(run - 2, 0) : run / 3);
+
+        return (triangles > 0 ? (float) misses / triangles : 0.0f);
+    }
+
+    private static int getIndex(Buffer indices, int i) {
+        if(indices instanceof ShortBuffer) {
+            return ((ShortBuffer) indices).get(i) & 0xFFFF;
+        }
+        return ((IntBuffer) indices).get(i);
+    }
+}
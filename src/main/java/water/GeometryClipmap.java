@@ -0,0 +1,204 @@
+package water;
+
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.opengl.GL;
+import opengl.*;
+import org.joml.Vector2f;
+import org.joml.Vector3fc;
+import utils.DataFormat;
+import utils.VertexCache;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Geometry clipmap water (-Dwater.grid=clipmap): nested square rings around the camera, each
+ * level twice the grid spacing of the one inside it, out to the far plane.
+ *
+ * A level is 4m - 2 cells per side for blocks of m vertices: a ring of twelve m x m blocks and
+ * four fix-ups of 3 x m vertices around a hole of 2m cells. The next finer level fills the hole
+ * except for one cell, which an L-shaped trim of the coarser level closes on the side the finer
+ * level left open. The finest level fills its hole instead.
+ *
+ * All levels draw the same mesh in cell units, only their origin and spacing change. Origins
+ * snap to the grid of the next coarser level, so moving the camera never regenerates geometry
+ * and the water textures, which tile, need no toroidal updates either. Near the outer edge of a
+ * level its odd vertices collapse onto the coarser grid, so the levels meet without cracks.
+ */
+public class GeometryClipmap {
+
+    private int blockSize;
+    private int levels;
+    private float spacing;
+
+    private int cells;
+    private int transition;
+
+    private GLVertexArray vao;
+    private GLIndexBuffer ibo;
+
+    // Starts of the index ranges: the ring, the interior of the finest level, the trims by open
+    // side and the end
+    private int[] rangeStarts;
+
+    private Vector2f levelOrigin;
+
+    /**
+     * Block size is m, the level count follows from the finest spacing and the extent to cover.
+     */
+    public GeometryClipmap(GLManager manager, int blockSize, float spacing, float extent) {
+        this.blockSize = blockSize;
+        this.spacing = spacing;
+        this.cells = 4 * blockSize - 2;
+        this.transition = Math.max((cells + 1) / 10, 1);
+
+        int levels = 1;
+        while((cells / 2) * spacing * (1 << (levels - 1)) < extent) {
+            levels++;
+        }
+        this.levels = levels;
+
+        this.levelOrigin = new Vector2f();
+
+        // Vertices of one level, shared by all index ranges
+        int size = cells + 1;
+        FloatBuffer vertices = Buffers.newDirectFloatBuffer(size * size * 3);
+        for(int z=0; z<size; ++z) {
+            for(int x=0; x<size; ++x) {
+                vertices.put(x).put(0.0f).put(z);
+            }
+        }
+        vertices.rewind();
+
+        vao = manager.createVertexArray();
+        GLVertexBuffer vbo = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 3));
+        vbo.setData(vertices);
+        vao.addVertexBuffer(vbo);
+
+        rangeStarts = new int[7];
+        IntBuffer indices = createIndices(blockSize, rangeStarts, true);
+
+        ibo = manager.createIndexBuffer();
+        ibo.setData(indices);
+        ibo.setCount(indices.limit());
+    }
+
+    /**
+     * Indices of a level for blocks of blockSize vertices, rangeStarts receives the seven range
+     * starts. With optimize every range is reordered for the post-transform vertex cache.
+     */
+    static IntBuffer createIndices(int blockSize, int[] rangeStarts, boolean optimize) {
+        int cells = 4 * blockSize - 2;
+        int m = blockSize - 1;
+        int hole = 2 * blockSize;
+        int[] starts = { 0, m, 2 * m, 2 * m + 2, 3 * m + 2 };
+        int[] lengths = { m, m, 2, m, m };
+
+        IntBuffer indices = Buffers.newDirectIntBuffer((cells * cells + 4 * 2 * hole) * 6);
+
+        // Ring: blocks and fix-ups on the outer segments of the layout
+        rangeStarts[0] = 0;
+        for(int j=0; j<5; ++j) {
+            for(int i=0; i<5; ++i) {
+                if(i == 0 || i == 4 || j == 0 || j == 4) {
+                    addCells(indices, cells + 1, starts[i], starts[j], lengths[i], lengths[j]);
+                }
+            }
+        }
+
+        rangeStarts[1] = indices.position();
+        addCells(indices, cells + 1, m, m, hole, hole);
+
+        // Bit 0 set if the finer level leaves the high x side open, bit 1 for z
+        for(int t=0; t<4; ++t) {
+            int trimX = ((t & 1) != 0 ? m + hole - 1 : m);
+            int trimZ = ((t & 2) != 0 ? m + hole - 1 : m);
+            rangeStarts[2 + t] = indices.position();
+            addCells(indices, cells + 1, m, trimZ, hole, 1);
+            addCells(indices, cells + 1, trimX, ((t & 2) != 0 ? m : m + 1), 1, hole - 1);
+        }
+        rangeStarts[6] = indices.position();
+        indices.flip();
+
+        if(optimize) {
+            for(int r=0; r<6; ++r) {
+                VertexCache.optimize(indices, rangeStarts[r], rangeStarts[r + 1] - rangeStarts[r], (cells + 1) * (cells + 1));
+            }
+        }
+        return indices;
+    }
+
+    private static void addCells(IntBuffer indices, int size, int startX, int startZ, int width, int depth) {
+        for(int z=startZ; z<startZ + depth; ++z) {
+            for(int x=startX; x<startX + width; ++x) {
+                int v = z * size + x;
+                indices.put(v).put(v + size).put(v + size + 1);
+                indices.put(v + size + 1).put(v + 1).put(v);
+            }
+        }
+    }
+
+    /**
+     * Draws all levels around the camera with the bound shader.
+     */
+    public void render(GLShader shader, Vector3fc cameraPos) {
+        GL gl = GLUtils.getGL();
+
+        shader.setUniform1f("morphWidth", transition);
+
+        vao.bind();
+        ibo.bind();
+
+        float finerX = 0.0f;
+        float finerZ = 0.0f;
+        for(int l=0; l<levels; ++l) {
+            float levelSpacing = spacing * (1 << l);
+            // Snapped to the grid of the next coarser level
+            float originX = getOrigin(cameraPos.x(), levelSpacing);
+            float originZ = getOrigin(cameraPos.z(), levelSpacing);
+
+            shader.setUniform2f("levelOrigin", levelOrigin.set(originX, originZ));
+            shader.setUniform1f("levelSpacing", levelSpacing);
+            // The outermost level has nothing to blend into
+            shader.setUniform1f("morphStart", (l < levels - 1 ? cells / 2 - 1 - transition : Float.MAX_VALUE));
+
+            gl.glDrawElements(GL.GL_TRIANGLES, rangeStarts[1], GL.GL_UNSIGNED_INT, 0);
+            GLUtils.checkError("glDrawElements");
+
+            if(l == 0) {
+                gl.glDrawElements(GL.GL_TRIANGLES, rangeStarts[2] - rangeStarts[1], GL.GL_UNSIGNED_INT, rangeStarts[1] * 4L);
+                GLUtils.checkError("glDrawElements");
+            }
+            else {
+                // The finer level starts either at the hole or one cell further in
+                int open = (finerX - originX > (blockSize - 0.5f) * levelSpacing ? 0 : 1)
+                        | (finerZ - originZ > (blockSize - 0.5f) * levelSpacing ? 0 : 2);
+                gl.glDrawElements(GL.GL_TRIANGLES, rangeStarts[3 + open] - rangeStarts[2 + open], GL.GL_UNSIGNED_INT, rangeStarts[2 + open] * 4L);
+                GLUtils.checkError("glDrawElements");
+            }
+
+            finerX = originX;
+            finerZ = originZ;
+        }
+
+        ibo.unbind();
+        vao.unbind();
+    }
+
+    private float getOrigin(float camera, float levelSpacing) {
+        return ((float) Math.floor(camera / (2.0f * levelSpacing)) - (blockSize - 1)) * 2.0f * levelSpacing;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Vertices of the rings and the finest interior drawn per frame, without the trims.
+     */
+    public int getVertexCount() {
+        int size = cells + 1;
+        int hole = 2 * blockSize - 1;
+        return levels * (size * size - hole * hole) + hole * hole;
+    }
+}
@@ -0,0 +1,150 @@
+package water;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector4f;
+import org.joml.Vector4fc;
+
+/**
+ * Projected grid water (-Dwater.grid=projected): a fixed grid in screen space that is projected
+ * onto the water plane every frame, so the vertex density follows the screen and the water
+ * reaches the far plane with a constant vertex count.
+ *
+ * update() finds the screen rectangle in which the frustum sees the water, including the
+ * amplitude of the waves above and below the plane, and intersects the rays through its corners
+ * with the plane. The corners stay homogeneous, interpolating them bilinearly and dividing by w
+ * gives the exact plane point of every grid vertex.
+ */
+public class ProjectedGrid {
+
+    // Frustum edges as pairs of corner indices, corner bits are x, y, z
+    private static final int[][] EDGES = {
+            { 0, 1 }, { 2, 3 }, { 4, 5 }, { 6, 7 },
+            { 0, 2 }, { 1, 3 }, { 4, 6 }, { 5, 7 },
+            { 0, 4 }, { 1, 5 }, { 2, 6 }, { 3, 7 }
+    };
+
+    private int segmentsX;
+    private int segmentsY;
+
+    private Matrix4f viewProj;
+    private Matrix4f invViewProj;
+    private Vector4f[] frustum;
+    private Vector4f[] corners;
+    private Vector4f point;
+    // Screen bounds min x, min y, max x, max y and the heights bounding the waves
+    private float[] range;
+    private float[] slab;
+    private boolean visible;
+
+    public ProjectedGrid(int segmentsX, int segmentsY) {
+        this.segmentsX = segmentsX;
+        this.segmentsY = segmentsY;
+
+        this.viewProj = new Matrix4f();
+        this.invViewProj = new Matrix4f();
+        this.frustum = new Vector4f[8];
+        for(int i=0; i<frustum.length; ++i) {
+            frustum[i] = new Vector4f();
+        }
+        this.corners = new Vector4f[4];
+        for(int i=0; i<corners.length; ++i) {
+            corners[i] = new Vector4f();
+        }
+        this.point = new Vector4f();
+        this.range = new float[4];
+        this.slab = new float[2];
+    }
+
+    /**
+     * Returns false if the water is not in view this frame.
+     */
+    public boolean update(Matrix4fc projMatrix, Matrix4fc viewMatrix, float waterLevel, float amplitude) {
+        projMatrix.mul(viewMatrix, viewProj);
+        viewProj.invert(invViewProj);
+
+        for(int i=0; i<frustum.length; ++i) {
+            invViewProj.transform(frustum[i].set((i & 1) != 0 ? 1.0f : -1.0f, (i & 2) != 0 ? 1.0f : -1.0f, (i & 4) != 0 ? 1.0f : -1.0f, 1.0f));
+            frustum[i].div(frustum[i].w);
+        }
+
+        // Screen bounds of the frustum inside the slab of the waves, flattened onto the plane
+        range[0] = Float.MAX_VALUE;
+        range[1] = Float.MAX_VALUE;
+        range[2] = -Float.MAX_VALUE;
+        range[3] = -Float.MAX_VALUE;
+        slab[0] = waterLevel - amplitude;
+        slab[1] = waterLevel + amplitude;
+        for(Vector4f corner : frustum) {
+            if(corner.y >= slab[0] && corner.y <= slab[1]) {
+                addToRange(corner.x, corner.z, waterLevel);
+            }
+        }
+        for(int[] edge : EDGES) {
+            Vector4f a = frustum[edge[0]];
+            Vector4f b = frustum[edge[1]];
+            for(float y : slab) {
+                if((a.y - y) * (b.y - y) < 0.0f) {
+                    float t = (y - a.y) / (b.y - a.y);
+                    addToRange(a.x + (b.x - a.x) * t, a.z + (b.z - a.z) * t, waterLevel);
+                }
+            }
+        }
+
+        visible = (range[0] < range[2] && range[1] < range[3]);
+        if(!visible) {
+            return false;
+        }
+
+        float minX = Math.max(range[0], -1.0f);
+        float minY = Math.max(range[1], -1.0f);
+        float maxX = Math.min(range[2], 1.0f);
+        float maxY = Math.min(range[3], 1.0f);
+        intersect(minX, minY, waterLevel, corners[0]);
+        intersect(maxX, minY, waterLevel, corners[1]);
+        intersect(minX, maxY, waterLevel, corners[2]);
+        intersect(maxX, maxY, waterLevel, corners[3]);
+        return true;
+    }
+
+    private void addToRange(float x, float z, float waterLevel) {
+        viewProj.transform(point.set(x, waterLevel, z, 1.0f));
+        // Behind the camera
+        if(point.w <= 1.0e-6f) {
+            return;
+        }
+        float ndcX = point.x / point.w;
+        float ndcY = point.y / point.w;
+        range[0] = Math.min(range[0], ndcX);
+        range[1] = Math.min(range[1], ndcY);
+        range[2] = Math.max(range[2], ndcX);
+        range[3] = Math.max(range[3], ndcY);
+    }
+
+    // Plane point of the ray through (x, y) in normalized device coordinates, homogeneous
+    private void intersect(float x, float y, float waterLevel, Vector4f dest) {
+        invViewProj.transform(dest.set(x, y, 0.0f, 1.0f));
+        invViewProj.transform(point.set(0.0f, 0.0f, 1.0f, 0.0f));
+        float z = -(dest.y - waterLevel * dest.w) / (point.y - waterLevel * point.w);
+        dest.add(point.x * z, point.y * z, point.z * z, point.w * z);
+    }
+
+    public int getSegmentsX() {
+        return segmentsX;
+    }
+
+    public int getSegmentsY() {
+        return segmentsY;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Corners of the grid in the order (0, 0), (1, 0), (0, 1), (1, 1) of the grid coordinates.
+     */
+    public Vector4fc getCorner(int i) {
+        return corners[i];
+    }
+}
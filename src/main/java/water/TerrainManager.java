@@ -4,23 +4,40 @@ import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL3;
 import com.jogamp.opengl.GL4;
-import noise.Noise;
+import noise.NoiseTextureFactory;
 import opengl.*;
+import org.joml.Vector2f;
 import org.joml.Vector4f;
 import utils.Camera;
-import utils.DataFormat;
 
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class TerrainManager {
 
+    public enum Mode {
+        // One grid of the given segments
+        GRID,
+        // TerrainQuadtree of one shared patch mesh
+        CDLOD,
+        // Coarse patches subdivided on the GPU by their projected size
+        TESSELLATION
+    }
+
     private static final int SIZE = 256;
     private static final int OCTAVES = 4;
+    private static final float TERRAIN_SIZE = 128.0f;
+    // Segments per side of the CDLOD patch, must be even
+    private static final int PATCH_SEGMENTS = 16;
+    // Patches per side of the tessellated terrain and the target triangle edge on screen
+    private static final int TESSELLATION_PATCHES = 32;
+    private static final float EDGE_PIXELS = 8.0f;
 
     private GLManager manager;
+    private NoiseTextureFactory noiseFactory;
     private int segments;
+    private Mode mode;
 
     private GLUniformBuffer cameraUBO;
     private GLUniformBuffer lightUBO;
@@ -28,16 +45,22 @@ public class TerrainManager {
     private GLTexture normalMap;
     private GLTexture terrainTexture;
 
-    private GLVertexArray vao;
-    private GLIndexBuffer ibo;
+    private GridMesh grid;
     private GLShader shader;
 
-    private GLTexture[] noiseTextures = new GLTexture[OCTAVES];
+    private GLTexture[] noiseTextures;
+
+    private TerrainQuadtree quadtree;
+    private Vector2f nodeOffset = new Vector2f();
+    private Vector2f morphRange = new Vector2f();
+    private Vector2f viewportSize = new Vector2f();
+    private int[] viewport = new int[4];
 
-    public TerrainManager(GLManager manager, int segments,
+    public TerrainManager(GLManager manager, NoiseTextureFactory noiseFactory, int segments,
                         GLUniformBuffer cameraUBO, GLUniformBuffer lightUBO,
                         GLTexture heightMap, GLTexture normalMap, GLTexture terrainTexture) {
         this.manager = manager;
+        this.noiseFactory = noiseFactory;
         this.segments = segments;
         this.cameraUBO = cameraUBO;
         this.lightUBO = lightUBO;
@@ -46,68 +69,72 @@ public class TerrainManager {
         this.terrainTexture = terrainTexture;
     }
 
-    public void init(String vertexFile, String fragmentFile) {
-        shader = manager.createShader(vertexFile, fragmentFile);
+    public void init(String vertexFile, String fragmentFile, Mode mode) {
+        this.mode = mode;
+        GridMeshCache grids = manager.getGridMeshCache();
+        List<String> defines = new ArrayList<>();
+        if(grids.isVertexId()) {
+            defines.add("GRID_VERTEX_ID");
+        }
+
+        if(mode == Mode.CDLOD) {
+            ByteBuffer heightData = Buffers.newDirectByteBuffer(heightMap.getWidth() * heightMap.getHeight() * 4);
+            heightMap.getData(heightData);
+            // The shader scales the heights with the terrain like the single grid does
+            quadtree = new TerrainQuadtree(heightData, heightMap.getWidth(), heightMap.getHeight(),
+                    TERRAIN_SIZE, 0.1f * TERRAIN_SIZE, PATCH_SEGMENTS);
+            GLUtils.logDebug("Terrain quadtree levels: " + quadtree.getLevels());
+            defines.add("CDLOD");
+            shader = manager.createShader(vertexFile, null, fragmentFile, defines.toArray(new String[defines.size()]));
+            // Quadrant after quadrant, so a quarter of a node can be drawn from a quarter of the indices
+            grid = grids.getGrid(PATCH_SEGMENTS, GridMesh.Layout.QUADRANT_STRIPS);
+        }
+        else if(mode == Mode.TESSELLATION) {
+            defines.add("TESSELLATION");
+            shader = manager.createTessellationShader(vertexFile, "/shader/heightfield.tcs.glsl",
+                    "/shader/terrain.tes.glsl", fragmentFile, defines.toArray(new String[defines.size()]));
+            grid = grids.getGrid(TESSELLATION_PATCHES, GridMesh.Layout.PATCHES);
+        }
+        else {
+            shader = manager.createShader(vertexFile, null, fragmentFile, defines.toArray(new String[defines.size()]));
+            grid = grids.getGrid(segments, GridMesh.Layout.STRIPS);
+        }
+
         shader.addUniformBuffer(0, cameraUBO);
         shader.addUniformBuffer(1, lightUBO);
         shader.addTexture("heightMap", heightMap);
         shader.addTexture("normalMap", normalMap);
         shader.addTexture("colorTexture", terrainTexture);
 
-        vao = manager.createVertexArray();
-        ibo = manager.createIndexBuffer();
-        GLVertexBuffer vbo = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 3));
+        // Noise
+        noiseTextures = noiseFactory.createOctaves(SIZE, OCTAVES, GLSampler.EdgeType.WRAP, true);
+        for(int o=0; o<OCTAVES; ++o) {
+            shader.addTexture("noiseTextures[" + o + "]", noiseTextures[o]);
+        }
 
-        FloatBuffer vertices = Buffers.newDirectFloatBuffer((segments + 1) * (segments + 1) * 3);
-        for(int i=0; i <= segments; ++i) {
-            float x = (float) i / (float) segments;
-            for(int j=0; j <= segments; ++j) {
-                float z = (float)j / (float) segments;
-                vertices.put(x).put(0.0f).put(z);
-            }
+        shader.bind();
+        grid.setUniforms(shader);
+        if(mode == Mode.CDLOD) {
+            shader.setUniform1f("terrainSize", TERRAIN_SIZE);
+            shader.setUniform1f("patchSegments", PATCH_SEGMENTS);
         }
-        vertices.rewind();
-        vbo.setData(vertices);
-        vao.addVertexBuffer(vbo);
-
-        IntBuffer indices = Buffers.newDirectIntBuffer(segments * segments * 6);
-        for(int i=0; i<segments; ++i) {
-            for(int j=0; j<segments; ++j) {
-                indices.put(i + j * (segments + 1)).put(i + 1 + j * (segments + 1)).put(i + 1 + (j + 1) * (segments + 1));
-                indices.put(i + 1 + (j + 1) * (segments + 1)).put(i + (j + 1) * (segments + 1)).put(i + j * (segments + 1));
-            }
+        else if(mode == Mode.TESSELLATION) {
+            shader.setUniform1f("terrainSize", TERRAIN_SIZE);
+            shader.setUniform1f("edgePixels", EDGE_PIXELS);
+            shader.setUniform2f("heightRange", new Vector2f(0.0f, 0.1f * TERRAIN_SIZE));
         }
-        indices.rewind();
-        ibo.setData(indices);
-        ibo.setCount(segments * segments * 6);
-
-        // Generate Noise
-        GLSampler sampler = manager.createSampler(GLSampler.EdgeType.WRAP, true);
-        Noise[] perlin = new Noise[OCTAVES];
-        for(int o=0; o<OCTAVES; ++o) {
-            perlin[o] = new Noise();
-
-            noiseTextures[o] = manager.createTexture(SIZE, SIZE, false, null);
-            noiseTextures[o].setSampler(sampler);
-
-            int pow = (int)Math.pow(2, o);
-
-            ByteBuffer textureData = Buffers.newDirectByteBuffer(SIZE * SIZE * 4);
-            for(int i=0; i<SIZE; ++i) {
-                for(int j=0; j<SIZE; ++j) {
-                    float normalHeight = perlin[o].noise(i * pow / 32.0f, j * pow / 32.0f, 8 * pow) * 0.5f + 0.5f;
-                    byte val = (byte)(normalHeight * 256.0f);
-                    textureData.put(val).put(val).put(val).put((byte)255);
-                }
-            }
-            textureData.rewind();
-            noiseTextures[o].setData(textureData);
+        shader.unbind();
+    }
 
-            shader.addTexture("noiseTextures[" + o + "]", noiseTextures[o]);
-        }
+    public void init(String vertexFile, String fragmentFile) {
+        init(vertexFile, fragmentFile, Mode.GRID);
     }
 
-    public void render(float time, Vector4f clippingPlane) {
+    /**
+     * The camera of the pass, mirrored for reflections. Only the quadtree uses it, for selection
+     * and culling, the tessellation takes the matrices from the camera buffer.
+     */
+    public void render(float time, Vector4f clippingPlane, Camera camera) {
         GL4 gl = GLUtils.getGL4();
 
         gl.glEnable(GL3.GL_CLIP_DISTANCE0);
@@ -116,14 +143,45 @@ public class TerrainManager {
         shader.setUniform4f("clippingPlane", clippingPlane);
         shader.setUniform1f("time", time);
 
-        vao.bind();
-        ibo.bind();
-        gl.glDrawElements(GL.GL_TRIANGLES, ibo.getCount(), GL.GL_UNSIGNED_INT, 0);
-        GLUtils.checkError("glDrawArrays");
-        ibo.unbind();
-        vao.unbind();
+        grid.bind();
+        if(mode == Mode.CDLOD) {
+            renderQuadtree(camera);
+        }
+        else {
+            if(mode == Mode.TESSELLATION) {
+                gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+                shader.setUniform2f("viewportSize", viewportSize.set(viewport[2], viewport[3]));
+            }
+            grid.draw();
+        }
+        grid.unbind();
 
         shader.unbind();
         gl.glDisable(GL3.GL_CLIP_DISTANCE0);
     }
+
+    private void renderQuadtree(Camera camera) {
+        shader.setUniform3f("cameraPos", camera.getPosition());
+
+        int nodes = quadtree.select(camera.getPosition(), camera.getProjMatrix(), camera.getViewMatrix());
+        for(int i=0; i<nodes; ++i) {
+            int level = quadtree.getSelectedLevel(i);
+            nodeOffset.set(quadtree.getNodeOffset(level, quadtree.getSelectedX(i)), quadtree.getNodeOffset(level, quadtree.getSelectedZ(i)));
+            morphRange.set(quadtree.getMorphStart(level), quadtree.getMorphEnd(level));
+            shader.setUniform2f("nodeOffset", nodeOffset);
+            shader.setUniform1f("nodeSize", quadtree.getNodeSize(level));
+            shader.setUniform2f("morphRange", morphRange);
+
+            int mask = quadtree.getSelectedMask(i);
+            if(mask == 0xF) {
+                grid.draw();
+                continue;
+            }
+            for(int c=0; c<4; ++c) {
+                if((mask & (1 << c)) != 0) {
+                    grid.drawQuarter(c);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,249 @@
+package water;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Quadtree of the terrain for continuous distance-dependent level of detail (CDLOD). Every node
+ * is drawn with the same patch mesh, scaled to the node. Nodes are selected by distance to the
+ * camera, a node closer than the range of its level is split, and culled against the frustum of
+ * the pass. Vertices morph into the grid of the next coarser level before a node hands over to
+ * its parent, so neighbors of different levels meet without cracks.
+ *
+ * The depth follows the heightmap, one patch segment per texel at the finest level. Only the
+ * number of levels grows with the heightmap, the drawn vertices depend on the ranges.
+ */
+public class TerrainQuadtree {
+
+    // Distance at which a level hands over to the next, in node sizes of that level
+    private static final float RANGE_FACTOR = 2.5f;
+    // Fraction of the range of a level after which the vertices start morphing
+    private static final float MORPH_START = 0.66f;
+
+    private float size;
+    private float heightScale;
+    private int patchSegments;
+    private int levels;
+
+    private float[] ranges;
+    // Height bounds per depth, nodes in rows of 1 << depth
+    private float[][] minHeights;
+    private float[][] maxHeights;
+
+    private FrustumIntersection frustum;
+    private Matrix4f viewProj;
+    private Vector3fc cameraPos;
+
+    private int count;
+    private int[] selectedLevels;
+    private int[] selectedXs;
+    private int[] selectedZs;
+    private int[] selectedMasks;
+
+    /**
+     * Heights are the red channel of RGBA8 texels times heightScale, the terrain is centered on
+     * the origin.
+     */
+    public TerrainQuadtree(ByteBuffer heightData, int width, int height, float size, float heightScale, int patchSegments) {
+        this.size = size;
+        this.heightScale = heightScale;
+        this.patchSegments = patchSegments;
+
+        int leaves = Integer.highestOneBit(Math.max(Math.max(width, height) / patchSegments, 1));
+        this.levels = Integer.numberOfTrailingZeros(leaves) + 1;
+
+        this.ranges = new float[levels];
+        for(int l=0; l<levels; ++l) {
+            ranges[l] = getNodeSize(l) * RANGE_FACTOR;
+        }
+        // The root covers everything
+        ranges[levels - 1] = Float.MAX_VALUE;
+
+        this.minHeights = new float[levels][];
+        this.maxHeights = new float[levels][];
+        buildBounds(heightData, width, height);
+
+        this.frustum = new FrustumIntersection();
+        this.viewProj = new Matrix4f();
+
+        this.selectedLevels = new int[64];
+        this.selectedXs = new int[64];
+        this.selectedZs = new int[64];
+        this.selectedMasks = new int[64];
+    }
+
+    private void buildBounds(ByteBuffer heightData, int width, int height) {
+        int depth = levels - 1;
+        int leaves = 1 << depth;
+        minHeights[depth] = new float[leaves * leaves];
+        maxHeights[depth] = new float[leaves * leaves];
+        for(int z=0; z<leaves; ++z) {
+            // One texel of margin for the bilinear filter
+            int startY = Math.max(z * height / leaves - 1, 0);
+            int endY = Math.min((z + 1) * height / leaves + 1, height);
+            for(int x=0; x<leaves; ++x) {
+                int startX = Math.max(x * width / leaves - 1, 0);
+                int endX = Math.min((x + 1) * width / leaves + 1, width);
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for(int ty=startY; ty<endY; ++ty) {
+                    for(int tx=startX; tx<endX; ++tx) {
+                        float value = (heightData.get((ty * width + tx) * 4) & 0xFF) / 255.0f * heightScale;
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                }
+                minHeights[depth][z * leaves + x] = min;
+                maxHeights[depth][z * leaves + x] = max;
+            }
+        }
+
+        for(int d=depth - 1; d>=0; --d) {
+            int nodes = 1 << d;
+            minHeights[d] = new float[nodes * nodes];
+            maxHeights[d] = new float[nodes * nodes];
+            for(int z=0; z<nodes; ++z) {
+                for(int x=0; x<nodes; ++x) {
+                    float min = Float.MAX_VALUE;
+                    float max = -Float.MAX_VALUE;
+                    for(int c=0; c<4; ++c) {
+                        int child = (z * 2 + (c >> 1)) * nodes * 2 + x * 2 + (c & 1);
+                        min = Math.min(min, minHeights[d + 1][child]);
+                        max = Math.max(max, maxHeights[d + 1][child]);
+                    }
+                    minHeights[d][z * nodes + x] = min;
+                    maxHeights[d][z * nodes + x] = max;
+                }
+            }
+        }
+    }
+
+    /**
+     * Selects the nodes to draw for a camera at cameraPos with the given matrices, which may be
+     * those of a mirrored camera. Returns the number of selected nodes.
+     */
+    public int select(Vector3fc cameraPos, Matrix4fc projMatrix, Matrix4fc viewMatrix) {
+        this.cameraPos = cameraPos;
+        frustum.set(projMatrix.mul(viewMatrix, viewProj));
+        count = 0;
+        select(levels - 1, 0, 0);
+        return count;
+    }
+
+    // Returns false if the node is out of its range, its parent covers the area then
+    private boolean select(int level, int x, int z) {
+        int depth = levels - 1 - level;
+        int index = z * (1 << depth) + x;
+        float nodeSize = getNodeSize(level);
+        float minX = getNodeOffset(level, x);
+        float minZ = getNodeOffset(level, z);
+        float minY = minHeights[depth][index];
+        float maxY = maxHeights[depth][index];
+
+        if(!intersectsSphere(minX, minY, minZ, minX + nodeSize, maxY, minZ + nodeSize, ranges[level])) {
+            return false;
+        }
+        if(!frustum.testAab(minX, minY, minZ, minX + nodeSize, maxY, minZ + nodeSize)) {
+            return true;
+        }
+        if(level == 0 || !intersectsSphere(minX, minY, minZ, minX + nodeSize, maxY, minZ + nodeSize, ranges[level - 1])) {
+            add(level, x, z, 0xF);
+            return true;
+        }
+
+        int mask = 0;
+        for(int c=0; c<4; ++c) {
+            if(!select(level - 1, x * 2 + (c & 1), z * 2 + (c >> 1))) {
+                mask |= (1 << c);
+            }
+        }
+        if(mask != 0) {
+            add(level, x, z, mask);
+        }
+        return true;
+    }
+
+    private boolean intersectsSphere(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, float radius) {
+        float dx = Math.max(Math.max(minX - cameraPos.x(), cameraPos.x() - maxX), 0.0f);
+        float dy = Math.max(Math.max(minY - cameraPos.y(), cameraPos.y() - maxY), 0.0f);
+        float dz = Math.max(Math.max(minZ - cameraPos.z(), cameraPos.z() - maxZ), 0.0f);
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    private void add(int level, int x, int z, int mask) {
+        if(count == selectedLevels.length) {
+            selectedLevels = Arrays.copyOf(selectedLevels, count * 2);
+            selectedXs = Arrays.copyOf(selectedXs, count * 2);
+            selectedZs = Arrays.copyOf(selectedZs, count * 2);
+            selectedMasks = Arrays.copyOf(selectedMasks, count * 2);
+        }
+        selectedLevels[count] = level;
+        selectedXs[count] = x;
+        selectedZs[count] = z;
+        selectedMasks[count] = mask;
+        count++;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getPatchSegments() {
+        return patchSegments;
+    }
+
+    public float getSize() {
+        return size;
+    }
+
+    public float getHeightScale() {
+        return heightScale;
+    }
+
+    public float getNodeSize(int level) {
+        return size / (1 << (levels - 1 - level));
+    }
+
+    public float getNodeOffset(int level, int coordinate) {
+        return coordinate * getNodeSize(level) - size * 0.5f;
+    }
+
+    /**
+     * Distance from the camera at which vertices of the level start morphing.
+     */
+    public float getMorphStart(int level) {
+        float previous = (level > 0 ? ranges[level - 1] : 0.0f);
+        return previous + (ranges[level] - previous) * MORPH_START;
+    }
+
+    /**
+     * Distance from the camera at which vertices of the level have morphed into the next level.
+     */
+    public float getMorphEnd(int level) {
+        return ranges[level];
+    }
+
+    public int getSelectedLevel(int i) {
+        return selectedLevels[i];
+    }
+
+    public int getSelectedX(int i) {
+        return selectedXs[i];
+    }
+
+    public int getSelectedZ(int i) {
+        return selectedZs[i];
+    }
+
+    /**
+     * Quadrants of the node to draw, bit c for child x = c & 1, z = c >> 1. 0xF for the whole node.
+     */
+    public int getSelectedMask(int i) {
+        return selectedMasks[i];
+    }
+}
@@ -0,0 +1,68 @@
+package water;
+
+import com.jogamp.common.nio.Buffers;
+import opengl.GridMesh;
+import utils.VertexCache;
+
+import java.nio.IntBuffer;
+
+/**
+ * Average cache miss ratio of the terrain and water meshes before and after their vertex cache
+ * ordering, for FIFO and LRU post-transform caches of several sizes. Runs headless on the index
+ * data the meshes upload. Other index buffers can be measured the same way after
+ * GLIndexBuffer.getData().
+ *
+ * Usage: VertexCacheReport [stripe cells]
+ */
+public class VertexCacheReport {
+
+    private static final int[] CACHE_SIZES = { 16, 24, 32 };
+    private static final int[][] GRIDS = { { 128, 128 }, { 512, 512 }, { 320, 180 } };
+    private static final int CLIPMAP_BLOCK = 32;
+
+    public static void main(String[] args) {
+        int stripeCells = (args.length > 0 ? Integer.parseInt(args[0]) : GridMesh.STRIPE_CELLS);
+
+        System.out.printf("%-9s %-16s", "mesh", "order");
+        for(int size : CACHE_SIZES) {
+            System.out.printf(" %8s %8s", "FIFO " + size, "LRU " + size);
+        }
+        System.out.println();
+
+        for(int[] grid : GRIDS) {
+            String name = grid[0] + "x" + grid[1];
+            IntBuffer list = createTriangleList(grid[0], grid[1]);
+            print(name, "list rows", list, false);
+            VertexCache.optimize(list, 0, list.limit(), (grid[0] + 1) * (grid[1] + 1));
+            print(name, "list forsyth", list, false);
+            print(name, "strips rows", GridMesh.createIndices(grid[0], grid[1], GridMesh.Layout.STRIPS, grid[1], -1), true);
+            print(name, "strips stripes", GridMesh.createIndices(grid[0], grid[1], GridMesh.Layout.STRIPS, stripeCells, -1), true);
+        }
+
+        int[] rangeStarts = new int[7];
+        print("clipmap", "list rows", GeometryClipmap.createIndices(CLIPMAP_BLOCK, rangeStarts, false), false);
+        print("clipmap", "list forsyth", GeometryClipmap.createIndices(CLIPMAP_BLOCK, rangeStarts, true), false);
+    }
+
+    // The triangle list the grids used before strips
+    private static IntBuffer createTriangleList(int segmentsX, int segmentsZ) {
+        IntBuffer indices = Buffers.newDirectIntBuffer(segmentsX * segmentsZ * 6);
+        for(int i=0; i<segmentsX; ++i) {
+            for(int j=0; j<segmentsZ; ++j) {
+                indices.put(j + i * (segmentsZ + 1)).put(j + 1 + i * (segmentsZ + 1)).put(j + 1 + (i + 1) * (segmentsZ + 1));
+                indices.put(j + 1 + (i + 1) * (segmentsZ + 1)).put(j + (i + 1) * (segmentsZ + 1)).put(j + i * (segmentsZ + 1));
+            }
+        }
+        indices.flip();
+        return indices;
+    }
+
+    private static void print(String mesh, String order, IntBuffer indices, boolean strip) {
+        System.out.printf("%-9s %-16s", mesh, order);
+        for(int size : CACHE_SIZES) {
+            System.out.printf(" %8.3f %8.3f", VertexCache.getACMR(indices, strip, -1, size, false),
+                    VertexCache.getACMR(indices, strip, -1, size, true));
+        }
+        System.out.println();
+    }
+}
@@ -4,18 +4,31 @@ import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.awt.GLCanvas;
 import com.jogamp.opengl.util.Animator;
+import fft.OceanSimulation;
+import fft.SpectrumCache;
+import noise.NoiseCache;
+import noise.NoiseTextureFactory;
 import opengl.*;
 import org.joml.*;
 import utils.Camera;
 
 import javax.swing.*;
 import java.awt.event.*;
+import java.io.File;
 import java.nio.FloatBuffer;
 
 import static java.awt.event.KeyEvent.VK_ESCAPE;
 
 public class WaterGame extends JFrame implements GLEventListener, KeyListener {
 
+    private static final long NOISE_SEED = 12345L;
+    // Screen pixels per projected grid segment
+    private static final int GRID_PIXELS = 4;
+    // Vertices per clipmap block side and spacing of the finest ring, out to the far plane of utils.Camera
+    private static final int CLIPMAP_BLOCK = 32;
+    private static final float CLIPMAP_SPACING = 0.25f;
+    private static final float FAR_PLANE = 1000.0f;
+
     private int width;
     private int height;
 
@@ -24,12 +37,16 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
     private boolean[] keyDown;
 
     private GLManager manager;
+    private NoiseTextureFactory noiseFactory;
 
     private SkyboxManager skyboxManager;
     private TerrainManager terrainManager;
     private WaterManager waterManager;
     private UnderwaterManager underwaterManager;
 
+    private OceanSimulation ocean;
+    private long lastFrameTime;
+
     private GLTexture terrainHeightMap;
     private GLTexture terrainNormalMap;
     private GLTexture terrainTexture;
@@ -56,6 +73,7 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         this.animator = new Animator(this.canvas);
         this.keyDown = new boolean[256];
         this.manager = new GLManager();
+        this.noiseFactory = new NoiseTextureFactory(this.manager, NOISE_SEED, new NoiseCache(new File("noise-cache")));
 
         this.camera = new Camera(width, height);
         this.camera.setPosition(new Vector3f(0.0f, 10.0f, 0.0f));
@@ -133,11 +151,38 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         skyboxManager.init("/shader/skybox.vs.glsl", "/shader/skybox.fs.glsl");
 
         // Terrain
-        terrainManager = new TerrainManager(manager, 128, cameraUBO, lightUBO, terrainHeightMap, terrainNormalMap, terrainTexture);
-        terrainManager.init("/shader/terrain.vs.glsl", "/shader/terrain.fs.glsl");
+        terrainManager = new TerrainManager(manager, noiseFactory, 128, cameraUBO, lightUBO, terrainHeightMap, terrainNormalMap, terrainTexture);
+        // Quadtree or tessellated level of detail instead of the single grid (-Dterrain.lod=cdlod|tessellation)
+        TerrainManager.Mode terrainMode = TerrainManager.Mode.GRID;
+        if("cdlod".equals(System.getProperty("terrain.lod"))) {
+            terrainMode = TerrainManager.Mode.CDLOD;
+        }
+        else if("tessellation".equals(System.getProperty("terrain.lod"))) {
+            terrainMode = TerrainManager.Mode.TESSELLATION;
+        }
+        terrainManager.init("/shader/terrain.vs.glsl", "/shader/terrain.fs.glsl", terrainMode);
+
+        // FFT ocean instead of the noise waves (-Dwater.ocean=fft)
+        if("fft".equals(System.getProperty("water.ocean"))) {
+            ocean = new OceanSimulation(manager, new SpectrumCache(new File("spectrum-cache")));
+            ocean.init();
+        }
 
         // Water
-        waterManager = new WaterManager(manager, 512, camera, cameraUBO, lightUBO, refractFBO, reflectFBO, terrainHeightMap);
+        waterManager = new WaterManager(manager, noiseFactory, 512, camera, cameraUBO, lightUBO, refractFBO, reflectFBO, terrainHeightMap, ocean);
+        // Screen-space grid, clipmap rings or tessellated patches instead of the fixed square
+        // (-Dwater.grid=projected|clipmap|tessellation)
+        if("projected".equals(System.getProperty("water.grid"))) {
+            waterManager.setProjectedGrid(new ProjectedGrid(width / GRID_PIXELS, height / GRID_PIXELS));
+        }
+        else if("clipmap".equals(System.getProperty("water.grid"))) {
+            GeometryClipmap clipmap = new GeometryClipmap(manager, CLIPMAP_BLOCK, CLIPMAP_SPACING, FAR_PLANE);
+            GLUtils.logDebug("Water clipmap: " + clipmap.getLevels() + " levels, " + clipmap.getVertexCount() + " vertices");
+            waterManager.setClipmap(clipmap);
+        }
+        else if("tessellation".equals(System.getProperty("water.grid"))) {
+            waterManager.setTessellation(true);
+        }
         waterManager.init("/shader/water.vs.glsl", "/shader/oceanwater.glsl");
 
         // Underwater
@@ -160,6 +205,17 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
 
         GL4 gl = (GL4) GLContext.getCurrentGL();
 
+        // Once per frame, all passes below sample the same ocean
+        if(ocean != null) {
+            long now = System.nanoTime();
+            float deltaTime = (lastFrameTime != 0 ? (now - lastFrameTime) / 1.0e9f : 0.0f);
+            // Stalls are not caught up
+            ocean.update(deltaTime < 0.1f ? deltaTime : 0.1f);
+            lastFrameTime = now;
+        }
+
+        waterManager.update(time);
+
         float waterLevel = 8.0f;
 
         // --- Reflect Scene
@@ -179,11 +235,6 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         camera.getViewMatrix().get(16, cameraBuffer);
         cameraUBO.setData(cameraBuffer);
 
-        // Revert Camera
-        camera.setRotation(camRot);
-        camera.setPosition(camPos);
-        camera.update();
-
         // Draw to FBO
         reflectFBO.bind();
         gl.glViewport(0, 0, width, height);
@@ -191,10 +242,15 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         manager.clear();
 
         skyboxManager.render();
-        terrainManager.render(time, new Vector4f(0.0f, 1.0f, 0.0f, -waterLevel + 0.0f));
+        terrainManager.render(time, new Vector4f(0.0f, 1.0f, 0.0f, -waterLevel + 0.0f), camera);
 
         reflectFBO.unbind();
 
+        // Revert Camera
+        camera.setRotation(camRot);
+        camera.setPosition(camPos);
+        camera.update();
+
         // --- Refract Scene
 
         // Push Camera Data to UBO
@@ -209,7 +265,7 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         manager.clear();
 
         skyboxManager.render();
-        terrainManager.render(time, new Vector4f(0.0f, -1.0f, 0.0f, waterLevel + 2.0f));
+        terrainManager.render(time, new Vector4f(0.0f, -1.0f, 0.0f, waterLevel + 2.0f), camera);
 
         refractFBO.unbind();
 
@@ -221,8 +277,8 @@ public class WaterGame extends JFrame implements GLEventListener, KeyListener {
         manager.clear();
 
         skyboxManager.render();
-        terrainManager.render(time, new Vector4f(0.0f, 0.0f, 0.0f, 0.0f));
-        waterManager.render(time);
+        terrainManager.render(time, new Vector4f(0.0f, 0.0f, 0.0f, 0.0f), camera);
+        waterManager.render();
 
         sceneFBO.unbind();
 
@@ -0,0 +1,156 @@
+package water;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CPU mirror of getHeight() in waterbake.fs.glsl over the same noise octave data,
+ * including GL_REPEAT bilinear filtering of the RGBA8 textures. Results are in world space
+ * (water level plus wave height).
+ *
+ * The only difference to the GPU is filter weight precision: most hardware quantizes bilinear
+ * weights to 8 bits, which bounds the difference by 1/256 of the summed octave weights, i.e.
+ * |cpu - gpu| <= 2.1e-3 world units.
+ * The water itself interpolates the heights WaterManager bakes into a texture, which adds the
+ * bilinear error between its texels.
+ *
+ * The batched sample call reuses its tasks and is not reentrant; use one field per caller thread.
+ */
+public class WaterHeightField {
+
+    private static final float SPEED = 2.0f;
+    private static final int BATCH_MIN = 1024;
+
+    private int size;
+    private int octaves;
+    private float waterLevel;
+    private float[][] texels;
+
+    private ForkJoinPool pool;
+    private Band[] bands;
+
+    private float[] batchXs;
+    private float[] batchZs;
+    private float[] batchOut;
+    private float batchTime;
+
+    public WaterHeightField(ByteBuffer[] octaveData, int size, float waterLevel) {
+        this.size = size;
+        this.octaves = octaveData.length;
+        this.waterLevel = waterLevel;
+
+        this.texels = new float[octaves][size * size];
+        for(int o=0; o<octaves; ++o) {
+            for(int i=0; i<size * size; ++i) {
+                texels[o][i] = (octaveData[o].get(i * 4) & 0xFF) / 255.0f;
+            }
+        }
+
+        this.pool = new ForkJoinPool();
+        this.bands = new Band[pool.getParallelism()];
+        for(int i=0; i<bands.length; ++i) {
+            bands[i] = new Band();
+        }
+    }
+
+    public float sample(float x, float z, float time) {
+        return waterLevel + getHeight(x, z, time);
+    }
+
+    public void sample(float[] xs, float[] zs, float time, float[] out) {
+        int count = out.length;
+        if(count < BATCH_MIN || bands.length == 1) {
+            sampleRange(xs, zs, time, out, 0, count);
+            return;
+        }
+
+        batchXs = xs;
+        batchZs = zs;
+        batchOut = out;
+        batchTime = time;
+        for(int i=0; i<bands.length; ++i) {
+            bands[i].reinitialize();
+            bands[i].start = (int)((long) count * i / bands.length);
+            bands[i].end = (int)((long) count * (i + 1) / bands.length);
+        }
+        pool.invoke(bands[0]);
+        batchXs = null;
+        batchZs = null;
+        batchOut = null;
+    }
+
+    private void sampleRange(float[] xs, float[] zs, float time, float[] out, int start, int end) {
+        for(int i=start; i<end; ++i) {
+            out[i] = waterLevel + getHeight(xs[i], zs[i], time);
+        }
+    }
+
+    private float getHeight(float posX, float posY, float time) {
+        posX /= 16.0f;
+        posY /= 16.0f;
+        float dt = time * SPEED;
+        float m = 1.5f;
+        float w = 0.5f;
+        float f = 0.0f;
+        float scale = 1.0f;
+        for(int i=0; i<octaves; ++i) {
+            f += texture(i, (posX + dt * 0.0511f) * scale, (posY + dt * 0.0511f) * scale) * m * 0.15f;
+            f += texture(i, (posY - dt * 0.0333f) * scale, (posX - dt * 0.0333f) * scale) * w * 0.25f;
+            w *= 0.5f;
+            m *= 0.25f;
+            scale *= 0.5f;
+
+            // pos *= mat2(1.6, 1.2, -1.2, 1.6)
+            float nextX = posX * 1.6f + posY * 1.2f;
+            posY = posX * -1.2f + posY * 1.6f;
+            posX = nextX;
+        }
+        return f;
+    }
+
+    private float texture(int octave, float u, float v) {
+        float tx = u * size - 0.5f;
+        float ty = v * size - 0.5f;
+        float fx = (float)Math.floor(tx);
+        float fy = (float)Math.floor(ty);
+        float ax = tx - fx;
+        float ay = ty - fy;
+        int x0 = (int)fx % size;
+        int y0 = (int)fy % size;
+        if(x0 < 0) {
+            x0 += size;
+        }
+        if(y0 < 0) {
+            y0 += size;
+        }
+        int x1 = (x0 + 1 == size ? 0 : x0 + 1);
+        int y1 = (y0 + 1 == size ? 0 : y0 + 1);
+
+        float[] t = texels[octave];
+        float top = t[y0 * size + x0] + (t[y0 * size + x1] - t[y0 * size + x0]) * ax;
+        float bottom = t[y1 * size + x0] + (t[y1 * size + x1] - t[y1 * size + x0]) * ax;
+        return top + (bottom - top) * ay;
+    }
+
+    private class Band extends RecursiveAction {
+
+        private int start;
+        private int end;
+
+        @Override
+        protected void compute() {
+            if(this == bands[0]) {
+                for(int i=1; i<bands.length; ++i) {
+                    bands[i].fork();
+                }
+                sampleRange(batchXs, batchZs, batchTime, batchOut, start, end);
+                for(int i=1; i<bands.length; ++i) {
+                    bands[i].join();
+                }
+                return;
+            }
+            sampleRange(batchXs, batchZs, batchTime, batchOut, start, end);
+        }
+    }
+}
@@ -4,24 +4,37 @@ import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.GL;
 import com.jogamp.opengl.GL4;
 import com.jogamp.opengl.GLContext;
-import noise.Noise;
+import fft.OceanSimulation;
+import noise.NoiseTextureFactory;
 import opengl.*;
 import org.joml.SimplexNoise;
+import org.joml.Vector2f;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 import utils.Camera;
 import utils.DataFormat;
 
-import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class WaterManager {
 
     private static final int SIZE = 256;
     private static final int OCTAVES = 4;
+    private static final float WATER_LEVEL = 8.0f;
+    // World units per meter of the FFT ocean
+    private static final float OCEAN_SCALE = 0.1f;
+    // Texels per side of the baked water texture, 1024 samples the finest noise octave twice per feature
+    private static final int WATER_RESOLUTION = Integer.getInteger("water.resolution", 1024);
+    // Largest wave height above or below the water level, for the projected grid range
+    private static final float NOISE_AMPLITUDE = 0.55f;
+    private static final float OCEAN_AMPLITUDE = 0.5f;
+    // Patches per side of the tessellated water and the target triangle edge on screen
+    private static final int TESSELLATION_PATCHES = 32;
+    private static final float EDGE_PIXELS = 8.0f;
 
     private GLManager manager;
+    private NoiseTextureFactory noiseFactory;
     private Camera camera;
     private int segments;
 
@@ -32,17 +45,41 @@ public class WaterManager {
 
     private GLTexture heightMap;
 
-    private GLVertexArray vao;
-    private GLIndexBuffer ibo;
+    private GridMesh grid;
     private GLShader shader;
 
-    private GLTexture[] noiseTextures = new GLTexture[OCTAVES];
+    private GLVertexArray quadVAO;
+    private GLIndexBuffer quadIBO;
+    private GLFrameBuffer waterFBO;
+    private GLShader bakeShader;
+    private int[] viewport = new int[4];
 
-    public WaterManager(GLManager manager, int segments, Camera camera,
+    private GLTexture[] noiseTextures;
+    private WaterHeightField heightField;
+
+    private OceanSimulation ocean;
+    private ProjectedGrid projectedGrid;
+    private GeometryClipmap clipmap;
+    private boolean tessellation;
+    private Vector2f viewportSize = new Vector2f();
+
+    public WaterManager(GLManager manager, NoiseTextureFactory noiseFactory, int segments, Camera camera,
                         GLUniformBuffer cameraUBO, GLUniformBuffer lightUBO,
                         GLFrameBuffer refractFBO, GLFrameBuffer reflectFBO,
                         GLTexture heightMap) {
+        this(manager, noiseFactory, segments, camera, cameraUBO, lightUBO, refractFBO, reflectFBO, heightMap, null);
+    }
+
+    /**
+     * With an ocean the water is displaced and shaded from its textures instead of the noise
+     * octaves (FFT_OCEAN in the shaders). The ocean is updated by the caller, before render().
+     */
+    public WaterManager(GLManager manager, NoiseTextureFactory noiseFactory, int segments, Camera camera,
+                        GLUniformBuffer cameraUBO, GLUniformBuffer lightUBO,
+                        GLFrameBuffer refractFBO, GLFrameBuffer reflectFBO,
+                        GLTexture heightMap, OceanSimulation ocean) {
         this.manager = manager;
+        this.noiseFactory = noiseFactory;
         this.segments = segments;
         this.camera = camera;
         this.cameraUBO = cameraUBO;
@@ -50,85 +87,206 @@ public class WaterManager {
         this.refractFBO = refractFBO;
         this.reflectFBO = reflectFBO;
         this.heightMap = heightMap;
+        this.ocean = ocean;
+    }
+
+    /**
+     * Draws the grid of the projected grid instead of the fixed square, must be set before init().
+     */
+    public void setProjectedGrid(ProjectedGrid projectedGrid) {
+        this.projectedGrid = projectedGrid;
+    }
+
+    /**
+     * Draws the rings of the clipmap instead of the fixed square, must be set before init().
+     */
+    public void setClipmap(GeometryClipmap clipmap) {
+        this.clipmap = clipmap;
+    }
+
+    /**
+     * Draws coarse patches of the fixed square that the GPU subdivides by their size on screen
+     * (TESSELLATION in the shaders), must be set before init().
+     */
+    public void setTessellation(boolean tessellation) {
+        this.tessellation = tessellation;
     }
 
     public void init(String vertexFile, String fragmentFile) {
-        shader = manager.createShader(vertexFile, fragmentFile);
+        List<String> defines = new ArrayList<>();
+        if(ocean != null) {
+            defines.add("FFT_OCEAN");
+        }
+        if(projectedGrid != null) {
+            defines.add("PROJECTED_GRID");
+        }
+        else if(clipmap != null) {
+            defines.add("CLIPMAP");
+        }
+        else if(tessellation) {
+            defines.add("TESSELLATION");
+        }
+        // The clipmap has its own vertices
+        if(clipmap == null && manager.getGridMeshCache().isVertexId()) {
+            defines.add("GRID_VERTEX_ID");
+        }
+        if(tessellation) {
+            shader = manager.createTessellationShader(vertexFile, "/shader/heightfield.tcs.glsl", "/shader/water.tes.glsl",
+                    fragmentFile, defines.toArray(new String[defines.size()]));
+            float amplitude = (ocean != null ? OCEAN_AMPLITUDE : NOISE_AMPLITUDE);
+            shader.bind();
+            shader.setUniform1f("edgePixels", EDGE_PIXELS);
+            shader.setUniform2f("heightRange", new Vector2f(WATER_LEVEL - amplitude, WATER_LEVEL + amplitude));
+            shader.unbind();
+        }
+        else {
+            shader = manager.createShader(vertexFile, null, fragmentFile, defines.toArray(new String[defines.size()]));
+        }
         shader.addUniformBuffer(0, cameraUBO);
         shader.addUniformBuffer(1, lightUBO);
         shader.addTexture("refractTexture", refractFBO.getColorTexture(0));
         shader.addTexture("reflectTexture", reflectFBO.getColorTexture(0));
         shader.addTexture("heightMap", heightMap);
 
-        vao = manager.createVertexArray();
-        ibo = manager.createIndexBuffer();
-        GLVertexBuffer vbo = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 3));
-
-        FloatBuffer vertices = Buffers.newDirectFloatBuffer((segments + 1) * (segments + 1) * 3);
-        for(int i=0; i <= segments; ++i) {
-            float x = (float) i / (float) segments;
-            for(int j=0; j <= segments; ++j) {
-                float z = (float)j / (float) segments;
-                vertices.put(x).put(0.0f).put(z);
-            }
+        // The clipmap has its own mesh
+        if(tessellation) {
+            grid = manager.getGridMeshCache().getGrid(TESSELLATION_PATCHES, GridMesh.Layout.PATCHES);
+        }
+        else if(clipmap == null) {
+            // Projected grid: x and z are the screen coordinates within its range
+            grid = manager.getGridMeshCache().getGrid(projectedGrid != null ? projectedGrid.getSegmentsX() : segments,
+                    projectedGrid != null ? projectedGrid.getSegmentsY() : segments, GridMesh.Layout.STRIPS);
+        }
+        if(grid != null) {
+            shader.bind();
+            grid.setUniforms(shader);
+            shader.unbind();
         }
-        vertices.rewind();
-        vbo.setData(vertices);
-        vao.addVertexBuffer(vbo);
 
-        IntBuffer indices = Buffers.newDirectIntBuffer(segments * segments * 6);
-        for(int i=0; i<segments; ++i) {
-            for(int j=0; j<segments; ++j) {
-                indices.put(i + j * (segments + 1)).put(i + 1 + j * (segments + 1)).put(i + 1 + (j + 1) * (segments + 1));
-                indices.put(i + 1 + (j + 1) * (segments + 1)).put(i + (j + 1) * (segments + 1)).put(i + j * (segments + 1));
+        if(ocean != null) {
+            shader.addTexture("displacementMap", ocean.getDisplacementTexture());
+            shader.addTexture("normalMap", ocean.getNormalTexture());
+            shader.bind();
+            shader.setUniform1i("cascades", ocean.getCascadeCount());
+            for(int c=0; c<ocean.getCascadeCount(); ++c) {
+                shader.setUniform1f("sizes[" + c + "]", ocean.getCascadeSize(c));
             }
+            shader.setUniform1f("oceanScale", OCEAN_SCALE);
+            shader.unbind();
+            return;
         }
-        indices.rewind();
-        ibo.setData(indices);
-        ibo.setCount(segments * segments * 6);
 
-        // Generate Noise
-        GLSampler sampler = manager.createSampler(GLSampler.EdgeType.WRAP, true);
-        Noise[] perlin = new Noise[OCTAVES];
+        // Noise
+        noiseTextures = noiseFactory.createOctaves(SIZE, OCTAVES, GLSampler.EdgeType.WRAP, true);
+        heightField = new WaterHeightField(noiseFactory.getOctaveData(SIZE, OCTAVES), SIZE, WATER_LEVEL);
+
+        // Normal and height of the noise waves, baked once per frame by update()
+        GLTexture waterTexture = manager.createTexture(WATER_RESOLUTION, WATER_RESOLUTION, GL.GL_RGBA16F, null);
+        waterTexture.setSampler(manager.createSampler(GLSampler.EdgeType.CLAMP, true));
+        waterFBO = manager.createFrameBuffer();
+        waterFBO.addColorTexture(0, waterTexture);
+        shader.addTexture("waterMap", waterTexture);
+
+        bakeShader = manager.createShader("/shader/quad.vs.glsl", "/shader/waterbake.fs.glsl");
         for(int o=0; o<OCTAVES; ++o) {
-            perlin[o] = new Noise();
+            bakeShader.addTexture("noiseTextures[" + o + "]", noiseTextures[o]);
+        }
+        bakeShader.bind();
+        bakeShader.setUniform1f("resolution", WATER_RESOLUTION);
+        bakeShader.unbind();
 
-            noiseTextures[o] = manager.createTexture(SIZE, SIZE, false, null);
-            noiseTextures[o].setSampler(sampler);
+        quadVAO = manager.createVertexArray();
+        GLVertexBuffer quadVBO = manager.createVertexBuffer(new DataFormat().add(DataFormat.DataType.FLOAT, 2));
+        quadVBO.setData(Buffers.newDirectFloatBuffer(new float[]{
+                -1.0f, -1.0f,
+                -1.0f, 1.0f,
+                1.0f, -1.0f,
+                1.0f, 1.0f
+        }));
+        quadVAO.addVertexBuffer(quadVBO);
 
-            int pow = (int)Math.pow(2, o);
+        quadIBO = manager.createIndexBuffer();
+        quadIBO.setData(Buffers.newDirectIntBuffer(new int[]{
+                0, 1, 2, 2, 1, 3
+        }));
+        quadIBO.setCount(6);
+    }
 
-            ByteBuffer textureData = Buffers.newDirectByteBuffer(SIZE * SIZE * 4);
-            for(int i=0; i<SIZE; ++i) {
-                for(int j=0; j<SIZE; ++j) {
-                    float normalHeight = perlin[o].noise(i * pow / 32.0f, j * pow / 32.0f, 8 * pow) * 0.5f + 0.5f;
-                    byte val = (byte)(normalHeight * 256.0f);
-                    textureData.put(val).put(val).put(val).put((byte)255);
-                }
-            }
-            textureData.rewind();
-            noiseTextures[o].setData(textureData);
+    /**
+     * Null with an ocean, its DisplacementReadback has the heights instead.
+     */
+    public WaterHeightField getHeightField() {
+        return heightField;
+    }
 
-            shader.addTexture("noiseTextures[" + o + "]", noiseTextures[o]);
+    /**
+     * Bakes the noise waves at the given time, once per frame before any render(). Does nothing
+     * with an ocean.
+     */
+    public void update(float time) {
+        if(ocean != null) {
+            return;
         }
+
+        GL4 gl = (GL4) GLContext.getCurrentGL();
+
+        gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+        gl.glDisable(GL.GL_CULL_FACE);
+        gl.glViewport(0, 0, WATER_RESOLUTION, WATER_RESOLUTION);
+
+        waterFBO.bind();
+        bakeShader.bind();
+        bakeShader.setUniform1f("time", time);
+
+        quadVAO.bind();
+        quadIBO.bind();
+        gl.glDrawElements(GL.GL_TRIANGLES, quadIBO.getCount(), GL.GL_UNSIGNED_INT, 0);
+        GLUtils.checkError("glDrawElements");
+        quadIBO.unbind();
+        quadVAO.unbind();
+
+        bakeShader.unbind();
+        waterFBO.unbind();
+
+        gl.glViewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+        gl.glEnable(GL.GL_CULL_FACE);
     }
 
-    public void render(float time) {
+    public void render() {
         GL4 gl = (GL4) GLContext.getCurrentGL();
 
+        if(projectedGrid != null && !projectedGrid.update(camera.getProjMatrix(), camera.getViewMatrix(), WATER_LEVEL,
+                (ocean != null ? OCEAN_AMPLITUDE : NOISE_AMPLITUDE))) {
+            return;
+        }
+
         gl.glDisable(GL.GL_CULL_FACE);
 
+        if(ocean != null) {
+            // Swaps every frame
+            shader.addTexture("foamMap", ocean.getFoamTexture());
+        }
         shader.bind();
 
         shader.setUniform3f("cameraPos", camera.getPosition());
-        shader.setUniform1f("time", time);
-
-        vao.bind();
-        ibo.bind();
-        gl.glDrawElements(GL.GL_TRIANGLES, ibo.getCount(), GL.GL_UNSIGNED_INT, 0);
-        GLUtils.checkError("glDrawArrays");
-        ibo.unbind();
-        vao.unbind();
+        if(projectedGrid != null) {
+            for(int i=0; i<4; ++i) {
+                shader.setUniform4f("gridCorners[" + i + "]", projectedGrid.getCorner(i));
+            }
+        }
+
+        if(clipmap != null) {
+            clipmap.render(shader, camera.getPosition());
+        }
+        else {
+            if(tessellation) {
+                gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+                shader.setUniform2f("viewportSize", viewportSize.set(viewport[2], viewport[3]));
+            }
+            grid.bind();
+            grid.draw();
+            grid.unbind();
+        }
         shader.unbind();
 
         gl.glEnable(GL.GL_CULL_FACE);
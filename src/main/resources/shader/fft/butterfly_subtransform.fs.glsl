@@ -0,0 +1,88 @@
+#version 420
+
+// subtransform.fs.glsl with the even/odd indices and twiddle factors read from a baked
+// butterfly texture: x = even index, y = odd index, zw = twiddle, one row per stage.
+
+precision highp float;
+
+in vec2 gs_texCoord;
+flat in int gs_layer;
+
+layout(location = 0) out vec4 fs_color;
+layout(location = 1) out vec4 fs_derivatives;
+// Only attached and written in the last pass
+layout(location = 2) out vec4 fs_normal;
+layout(location = 3) out vec4 fs_foam;
+
+// Both targets of the spectrum pass go through the same butterflies
+uniform sampler2DArray inputTexture;
+uniform sampler2DArray inputDerivatives;
+uniform sampler2D butterflyTexture;
+
+uniform int stage;
+uniform float direction;
+uniform bool writeNormals;
+uniform bool writeFoam;
+// Foam of the previous frame, the last pass writes the other texture
+uniform sampler2DArray previousFoam;
+uniform vec4 foamParameters;
+
+vec2 mulComplex(vec2 a, vec2 b);
+vec4 getNormal(vec4 displacement, vec4 derivatives);
+float getFoam(float previous, vec4 displacement, vec4 derivatives);
+
+void main() {
+    ivec2 coord = ivec2(gl_FragCoord.xy);
+    int index = (direction == 0.0 ? coord.x : coord.y);
+
+    vec4 butterfly = texelFetch(butterflyTexture, ivec2(index, stage), 0);
+
+    ivec3 evenCoord = ivec3(int(butterfly.x), coord.y, gs_layer);
+    ivec3 oddCoord = ivec3(int(butterfly.y), coord.y, gs_layer);
+    if(direction != 0.0) {
+        evenCoord = ivec3(coord.x, int(butterfly.x), gs_layer);
+        oddCoord = ivec3(coord.x, int(butterfly.y), gs_layer);
+    }
+
+    vec4 even = texelFetch(inputTexture, evenCoord, 0);
+    vec4 odd = texelFetch(inputTexture, oddCoord, 0);
+    fs_color = vec4(even.xy + mulComplex(butterfly.zw, odd.xy), even.zw + mulComplex(butterfly.zw, odd.zw));
+
+    even = texelFetch(inputDerivatives, evenCoord, 0);
+    odd = texelFetch(inputDerivatives, oddCoord, 0);
+    fs_derivatives = vec4(even.xy + mulComplex(butterfly.zw, odd.xy), even.zw + mulComplex(butterfly.zw, odd.zw));
+
+    if(writeNormals) {
+        fs_normal = getNormal(fs_color, fs_derivatives);
+    }
+    if(writeFoam) {
+        float previous = texelFetch(previousFoam, ivec3(ivec2(gl_FragCoord.xy), gs_layer), 0).r;
+        fs_foam = vec4(getFoam(previous, fs_color, fs_derivatives), 0.0, 0.0, 0.0);
+    }
+}
+
+vec2 mulComplex(vec2 a, vec2 b) {
+    return vec2(a.x * b.x - a.y * b.y, a.y * b.x + a.x * b.y);
+}
+
+// Normal of the displaced surface from both transformed targets, cross(dP/dz, dP/dx) with
+// P = (x + Dx, h, z + Dz)
+vec4 getNormal(vec4 displacement, vec4 derivatives) {
+    float dxz = displacement.w;
+    vec2 slope = derivatives.xy;
+    float dxx = derivatives.z;
+    float dzz = derivatives.w;
+    vec3 normal = vec3(slope.y * dxz - (1.0 + dzz) * slope.x,
+                       (1.0 + dxx) * (1.0 + dzz) - dxz * dxz,
+                       slope.x * dxz - slope.y * (1.0 + dxx));
+    return vec4(normalize(normal), 1.0);
+}
+
+// Foam is injected where the surface is compressed (Jacobian below the threshold) and decays
+// over time, foamParameters = (threshold, gain, decay per second, delta time)
+float getFoam(float previous, vec4 displacement, vec4 derivatives) {
+    float jacobian = (1.0 + derivatives.z) * (1.0 + derivatives.w) - displacement.w * displacement.w;
+    float foam = previous * exp(-foamParameters.z * foamParameters.w) +
+                 max(foamParameters.x - jacobian, 0.0) * foamParameters.y * foamParameters.w;
+    return min(foam, 1.0);
+}
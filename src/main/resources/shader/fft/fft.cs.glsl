@@ -0,0 +1,100 @@
+#version 430
+
+// Compute version of subtransform.fs.glsl: one work group transforms one row (or column)
+// with all log2(RESOLUTION) butterfly stages in shared memory. The second work group index
+// selects the cascade, so one dispatch transforms every layer of the texture arrays.
+// RESOLUTION, IMAGE_FORMAT (rgba32f or rgba16f) and FOAM_FORMAT (r32f or r16f) are defined by
+// the host when the shader is created. Each image pair (displacement and derivatives) is transformed in the same
+// dispatch, one after the other through the same shared memory.
+
+layout(local_size_x = RESOLUTION) in;
+
+#define TARGETS 2
+
+layout(IMAGE_FORMAT, binding = 0) uniform readonly image2DArray inputImages[TARGETS];
+layout(IMAGE_FORMAT, binding = 2) uniform writeonly image2DArray outputImages[TARGETS];
+layout(IMAGE_FORMAT, binding = 4) uniform writeonly image2DArray normalImage;
+layout(FOAM_FORMAT, binding = 5) uniform writeonly image2DArray foamImage;
+
+uniform int direction;
+// Last pass, derives the normal from both finished targets
+uniform bool writeNormals;
+uniform bool writeFoam;
+// Foam of the previous frame, the last pass writes the other texture
+uniform sampler2DArray previousFoam;
+uniform vec4 foamParameters;
+
+const float PI = 3.14159265359;
+
+shared vec4 lines[2][RESOLUTION];
+
+vec2 mulComplex(vec2 a, vec2 b);
+vec4 getNormal(vec4 displacement, vec4 derivatives);
+float getFoam(float previous, vec4 displacement, vec4 derivatives);
+
+void main() {
+    int index = int(gl_LocalInvocationID.x);
+    int line = int(gl_WorkGroupID.x);
+    int layer = int(gl_WorkGroupID.y);
+    ivec3 coord = (direction == 0 ? ivec3(index, line, layer) : ivec3(line, index, layer));
+
+    vec4 results[TARGETS];
+    for(int target = 0; target < TARGETS; ++target) {
+        lines[0][index] = imageLoad(inputImages[target], coord);
+        barrier();
+
+        int src = 0;
+        for(int subtransformSize = 2; subtransformSize <= RESOLUTION; subtransformSize *= 2) {
+            int halfSize = subtransformSize / 2;
+            int evenIndex = (index / subtransformSize) * halfSize + index % halfSize;
+
+            vec4 even = lines[src][evenIndex];
+            vec4 odd = lines[src][evenIndex + RESOLUTION / 2];
+
+            float twiddleArg = -2.0 * PI * (float(index) / float(subtransformSize));
+            vec2 twiddle = vec2(cos(twiddleArg), sin(twiddleArg));
+
+            lines[1 - src][index] = vec4(even.xy + mulComplex(twiddle, odd.xy), even.zw + mulComplex(twiddle, odd.zw));
+            src = 1 - src;
+            barrier();
+        }
+
+        results[target] = lines[src][index];
+        imageStore(outputImages[target], coord, results[target]);
+        barrier();
+    }
+
+    if(writeNormals) {
+        imageStore(normalImage, coord, getNormal(results[0], results[1]));
+    }
+    if(writeFoam) {
+        float previous = texelFetch(previousFoam, coord, 0).r;
+        imageStore(foamImage, coord, vec4(getFoam(previous, results[0], results[1])));
+    }
+}
+
+vec2 mulComplex(vec2 a, vec2 b) {
+    return vec2(a.x * b.x - a.y * b.y, a.y * b.x + a.x * b.y);
+}
+
+// Normal of the displaced surface from both transformed targets, cross(dP/dz, dP/dx) with
+// P = (x + Dx, h, z + Dz)
+vec4 getNormal(vec4 displacement, vec4 derivatives) {
+    float dxz = displacement.w;
+    vec2 slope = derivatives.xy;
+    float dxx = derivatives.z;
+    float dzz = derivatives.w;
+    vec3 normal = vec3(slope.y * dxz - (1.0 + dzz) * slope.x,
+                       (1.0 + dxx) * (1.0 + dzz) - dxz * dxz,
+                       slope.x * dxz - slope.y * (1.0 + dxx));
+    return vec4(normalize(normal), 1.0);
+}
+
+// Foam is injected where the surface is compressed (Jacobian below the threshold) and decays
+// over time, foamParameters = (threshold, gain, decay per second, delta time)
+float getFoam(float previous, vec4 displacement, vec4 derivatives) {
+    float jacobian = (1.0 + derivatives.z) * (1.0 + derivatives.w) - displacement.w * displacement.w;
+    float foam = previous * exp(-foamParameters.z * foamParameters.w) +
+                 max(foamParameters.x - jacobian, 0.0) * foamParameters.y * foamParameters.w;
+    return min(foam, 1.0);
+}
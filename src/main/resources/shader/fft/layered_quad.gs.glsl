@@ -0,0 +1,24 @@
+#version 420
+
+// Sends every instance of the fullscreen quad to the texture array layer of the same index,
+// so one instanced draw runs a pass for all cascades.
+
+layout(triangles) in;
+layout(triangle_strip, max_vertices = 3) out;
+
+in vec2 vs_texCoord[];
+flat in int vs_layer[];
+
+out vec2 gs_texCoord;
+flat out int gs_layer;
+
+void main() {
+    for(int i=0; i<3; ++i) {
+        gl_Position = gl_in[i].gl_Position;
+        gl_Layer = vs_layer[0];
+        gs_texCoord = vs_texCoord[i];
+        gs_layer = vs_layer[0];
+        EmitVertex();
+    }
+    EndPrimitive();
+}
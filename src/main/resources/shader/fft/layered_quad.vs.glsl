@@ -0,0 +1,12 @@
+#version 420
+
+layout(location=0) in vec2 in_position;
+
+out vec2 vs_texCoord;
+flat out int vs_layer;
+
+void main() {
+    vs_texCoord = in_position * 0.5 + 0.5;
+    vs_layer = gl_InstanceID;
+    gl_Position = vec4(in_position, 0.0, 1.0);
+}
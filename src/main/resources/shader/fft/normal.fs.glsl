@@ -4,24 +4,27 @@
 
 precision highp float;
 
-in vec2 vs_texCoord;
+const int MAX_CASCADES = 4;
+
+in vec2 gs_texCoord;
+flat in int gs_layer;
 
 out vec4 fs_color;
 
-uniform sampler2D displacementMap;
+uniform sampler2DArray displacementMap;
 
 uniform float resolution;
-uniform float size;
+uniform float sizes[MAX_CASCADES];
 
 void main() {
     float texel = 1.0 / resolution;
-    float texelSize = size / resolution;
+    float texelSize = sizes[gs_layer] / resolution;
 
-    vec3 center = texture(displacementMap, vs_texCoord).rgb;
-    vec3 right = vec3(texelSize, 0.0, 0.0) + texture(displacementMap, vs_texCoord + vec2(texel, 0.0)).rgb - center;
-    vec3 left = vec3(-texelSize, 0.0, 0.0) + texture(displacementMap, vs_texCoord + vec2(-texel, 0.0)).rgb - center;
-    vec3 top = vec3(0.0, 0.0, -texelSize) + texture(displacementMap, vs_texCoord + vec2(0.0, -texel)).rgb - center;
-    vec3 bottom = vec3(0.0, 0.0, texelSize) + texture(displacementMap, vs_texCoord + vec2(0.0, texel)).rgb - center;
+    vec3 center = texture(displacementMap, vec3(gs_texCoord, gs_layer)).rgb;
+    vec3 right = vec3(texelSize, 0.0, 0.0) + texture(displacementMap, vec3(gs_texCoord + vec2(texel, 0.0), gs_layer)).rgb - center;
+    vec3 left = vec3(-texelSize, 0.0, 0.0) + texture(displacementMap, vec3(gs_texCoord + vec2(-texel, 0.0), gs_layer)).rgb - center;
+    vec3 top = vec3(0.0, 0.0, -texelSize) + texture(displacementMap, vec3(gs_texCoord + vec2(0.0, -texel), gs_layer)).rgb - center;
+    vec3 bottom = vec3(0.0, 0.0, texelSize) + texture(displacementMap, vec3(gs_texCoord + vec2(0.0, texel), gs_layer)).rgb - center;
 
     vec3 topRight = cross(right, top);
     vec3 topLeft = cross(top, left);
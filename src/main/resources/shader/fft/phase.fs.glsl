@@ -4,32 +4,35 @@
 
 precision highp float;
 
-in vec2 vs_texCoord;
+in vec2 gs_texCoord;
+flat in int gs_layer;
 
 out vec4 fs_color;
 
 const float PI = 3.14159265359;
 const float G = 9.81;
 const float KM = 370.0;
+const int MAX_CASCADES = 4;
 
-uniform sampler2D phases;
+uniform sampler2DArray phases;
 
 uniform float deltaTime;
 uniform float resolution;
-uniform float size;
+uniform float sizes[MAX_CASCADES];
 
 float sqr(float x);
 float omega(float k);
 
 void main() {
     float dTime = 1.0 / 60.0;
-    vec2 fragCoord = vs_texCoord * resolution;
+    float size = sizes[gs_layer];
+    vec2 fragCoord = gs_texCoord * resolution;
     vec2 coords = fragCoord - 0.5;
     float n = (coords.x < resolution * 0.5 ? coords.x : coords.x - resolution);
     float m = (coords.y < resolution * 0.5 ? coords.y : coords.y - resolution);
     vec2 waveVec = (2.0 * PI * vec2(n, m)) / size;
 
-    float phase = texture(phases, vs_texCoord).r;
+    float phase = texture(phases, vec3(gs_texCoord, gs_layer)).r;
     float deltaPhase = omega(length(waveVec)) * deltaTime;
     phase = mod(phase + deltaPhase, 2.0 * PI);
 
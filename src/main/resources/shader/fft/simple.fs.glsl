@@ -4,8 +4,13 @@ in vec2 vs_texCoord;
 
 out vec4 fs_color;
 
-uniform sampler2D colorTexture;
+uniform sampler2DArray colorTexture;
+
+// Layers side by side
+uniform int layers;
 
 void main() {
-    fs_color = vec4(texture(colorTexture, vs_texCoord).rgb, 1.0);
+    float x = vs_texCoord.x * float(layers);
+    float layer = min(floor(x), float(layers - 1));
+    fs_color = vec4(texture(colorTexture, vec3(x - layer, vs_texCoord.y, layer)).rgb, 1.0);
 }
\ No newline at end of file
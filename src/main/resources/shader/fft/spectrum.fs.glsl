@@ -4,38 +4,60 @@
 
 precision highp float;
 
-in vec2 vs_texCoord;
+in vec2 gs_texCoord;
+flat in int gs_layer;
 
-out vec4 fs_color;
+// Two real channels per complex value, transformed together:
+// color (Dx + i h, Dz + i dDx/dz) and derivatives (dh/dx + i dh/dz, dDx/dx + i dDz/dz)
+layout(location = 0) out vec4 fs_color;
+layout(location = 1) out vec4 fs_derivatives;
 
 const float PI = 3.14159265359;
 const float G = 9.81;
 const float KM = 370.0;
+const int MAX_CASCADES = 4;
 
-uniform sampler2D phases;
-uniform sampler2D initialSpectrum;
+// Only read without analytic phases
+uniform sampler2DArray phases;
+uniform sampler2DArray initialSpectrum;
+
+// Phase omega(k) * time instead of the accumulated phase texture. Omega is rounded to a
+// multiple of omegaStep, so time can be wrapped by 2 pi / omegaStep on the CPU.
+uniform bool analyticPhases;
+uniform float time;
+uniform float omegaStep;
 
 uniform float choppiness;
 uniform float resolution;
-uniform float size;
+uniform float sizes[MAX_CASCADES];
 
 vec2 mulComplex(vec2 a, vec2 b);
 vec2 mulByI(vec2 a);
+vec2 derivative(vec2 a, float k);
 float sqr(float x);
 float omega(float k);
 
 void main() {
-    vec2 fragCoord = vs_texCoord * resolution;
+    float size = sizes[gs_layer];
+    vec2 fragCoord = gs_texCoord * resolution;
     vec2 coords = fragCoord - 0.5;
     float n = (coords.x < resolution * 0.5 ? coords.x : coords.x - resolution);
     float m = (coords.y < resolution * 0.5 ? coords.y : coords.y - resolution);
     vec2 waveVec = (2.0 * PI * vec2(n, m)) / size;
 
-    float phase = texture(phases, vs_texCoord).r;
+    float phase = 0.0;
+    if(analyticPhases) {
+        phase = mod(round(omega(length(waveVec)) / omegaStep) * omegaStep * time, 2.0 * PI);
+    }
+    else {
+        phase = texture(phases, vec3(gs_texCoord, gs_layer)).r;
+    }
     vec2 phaseVec = vec2(cos(phase), sin(phase));
 
-    vec2 h0 = texture(initialSpectrum, vs_texCoord).rg;
-    vec2 h0Star = texture(initialSpectrum, vec2(1.0 - vs_texCoord + 1.0 / resolution)).rg;
+    vec2 h0 = texture(initialSpectrum, vec3(gs_texCoord, gs_layer)).rg;
+    // h0(-k) with wrap-around, so that every packed pair transforms to two real signals
+    ivec2 mirror = (ivec2(int(resolution)) - ivec2(fragCoord)) % int(resolution);
+    vec2 h0Star = texelFetch(initialSpectrum, ivec3(mirror, gs_layer), 0).rg;
     h0Star.y *= -1.0;
 
     vec2 h = mulComplex(h0, phaseVec) + mulComplex(h0Star, vec2(phaseVec.x, -phaseVec.y));
@@ -49,7 +71,14 @@ void main() {
         hZ = vec2(0.0);
     }
 
-    fs_color = vec4(hX + mulByI(h), hZ);
+    vec2 slopeX = derivative(h, waveVec.x);
+    vec2 slopeZ = derivative(h, waveVec.y);
+    vec2 hXX = derivative(hX, waveVec.x);
+    vec2 hZZ = derivative(hZ, waveVec.y);
+    vec2 hXZ = derivative(hX, waveVec.y);
+
+    fs_color = vec4(hX + mulByI(h), hZ + mulByI(hXZ));
+    fs_derivatives = vec4(slopeX + mulByI(slopeZ), hXX + mulByI(hZZ));
 }
 
 vec2 mulComplex(vec2 a, vec2 b) {
@@ -60,6 +89,11 @@ vec2 mulByI(vec2 a) {
     return vec2(-a.y, a.x);
 }
 
+// Spatial derivative along the axis with wavenumber k, the transform uses exp(-i k x)
+vec2 derivative(vec2 a, float k) {
+    return -mulByI(a) * k;
+}
+
 float sqr(float x) {
     return x * x;
 }
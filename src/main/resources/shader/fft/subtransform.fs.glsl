@@ -4,55 +4,98 @@
 
 precision highp float;
 
-in vec2 vs_texCoord;
+in vec2 gs_texCoord;
+flat in int gs_layer;
 
-out vec4 fs_color;
+layout(location = 0) out vec4 fs_color;
+layout(location = 1) out vec4 fs_derivatives;
+// Only attached and written in the last pass
+layout(location = 2) out vec4 fs_normal;
+layout(location = 3) out vec4 fs_foam;
 
 const float PI = 3.14159265359;
 
-uniform sampler2D inputTexture;
+// Both targets of the spectrum pass go through the same butterflies
+uniform sampler2DArray inputTexture;
+uniform sampler2DArray inputDerivatives;
 
 uniform float subtransformSize;
 uniform float direction;
+uniform bool writeNormals;
+uniform bool writeFoam;
+// Foam of the previous frame, the last pass writes the other texture
+uniform sampler2DArray previousFoam;
+uniform vec4 foamParameters;
 uniform float resolution;
 
 vec2 mulComplex(vec2 a, vec2 b);
+vec4 getNormal(vec4 displacement, vec4 derivatives);
+float getFoam(float previous, vec4 displacement, vec4 derivatives);
 
 void main() {
-    vec2 fragCoord = vs_texCoord * resolution;
+    vec2 fragCoord = gs_texCoord * resolution;
 
     float transformSize = resolution;
 
     float index = 0.0;
     if(direction == 0.0) {
-        index = vs_texCoord.x * transformSize - 0.5;
+        index = gs_texCoord.x * transformSize - 0.5;
     }
     else {
-        index = vs_texCoord.y * transformSize - 0.5;
+        index = gs_texCoord.y * transformSize - 0.5;
     }
 
     float evenIndex = floor(index / subtransformSize) * (subtransformSize * 0.5) + mod(index, subtransformSize * 0.5);
 
-    vec4 even = vec4(0.0);
-    vec4 odd = vec4(0.0);
-    if(direction == 0.0) {
-        even = texture(inputTexture, vec2(evenIndex + 0.5, fragCoord.y) / transformSize);
-        odd = texture(inputTexture, vec2(evenIndex + transformSize * 0.5 + 0.5, fragCoord.y) / transformSize);
-    }
-    else {
-        even = texture(inputTexture, vec2(fragCoord.x, evenIndex + 0.5) / transformSize);
-        odd = texture(inputTexture, vec2(fragCoord.x, evenIndex + transformSize * 0.5 + 0.5) / transformSize);
+    vec3 evenCoord = vec3(vec2(evenIndex + 0.5, fragCoord.y) / transformSize, gs_layer);
+    vec3 oddCoord = vec3(vec2(evenIndex + transformSize * 0.5 + 0.5, fragCoord.y) / transformSize, gs_layer);
+    if(direction != 0.0) {
+        evenCoord = vec3(vec2(fragCoord.x, evenIndex + 0.5) / transformSize, gs_layer);
+        oddCoord = vec3(vec2(fragCoord.x, evenIndex + transformSize * 0.5 + 0.5) / transformSize, gs_layer);
     }
 
     float twiddleArg = -2.0 * PI * (index / subtransformSize);
     vec2 twiddle = vec2(cos(twiddleArg), sin(twiddleArg));
 
-    vec2 outputA = even.xy + mulComplex(twiddle, odd.xy);
-    vec2 outputB = even.zw + mulComplex(twiddle, odd.zw);
+    vec4 even = texture(inputTexture, evenCoord);
+    vec4 odd = texture(inputTexture, oddCoord);
+    fs_color = vec4(even.xy + mulComplex(twiddle, odd.xy), even.zw + mulComplex(twiddle, odd.zw));
 
-    fs_color = vec4(outputA, outputB);
+    even = texture(inputDerivatives, evenCoord);
+    odd = texture(inputDerivatives, oddCoord);
+    fs_derivatives = vec4(even.xy + mulComplex(twiddle, odd.xy), even.zw + mulComplex(twiddle, odd.zw));
+
+    if(writeNormals) {
+        fs_normal = getNormal(fs_color, fs_derivatives);
+    }
+    if(writeFoam) {
+        float previous = texelFetch(previousFoam, ivec3(ivec2(gl_FragCoord.xy), gs_layer), 0).r;
+        fs_foam = vec4(getFoam(previous, fs_color, fs_derivatives), 0.0, 0.0, 0.0);
+    }
 }
 
 vec2 mulComplex(vec2 a, vec2 b) {
     return vec2(a.x * b.x - a.y * b.y, a.y * b.x + a.x * b.y);
-}
\ No newline at end of file
+}
+
+// Normal of the displaced surface from both transformed targets, cross(dP/dz, dP/dx) with
+// P = (x + Dx, h, z + Dz)
+vec4 getNormal(vec4 displacement, vec4 derivatives) {
+    float dxz = displacement.w;
+    vec2 slope = derivatives.xy;
+    float dxx = derivatives.z;
+    float dzz = derivatives.w;
+    vec3 normal = vec3(slope.y * dxz - (1.0 + dzz) * slope.x,
+                       (1.0 + dxx) * (1.0 + dzz) - dxz * dxz,
+                       slope.x * dxz - slope.y * (1.0 + dxx));
+    return vec4(normalize(normal), 1.0);
+}
+
+// Foam is injected where the surface is compressed (Jacobian below the threshold) and decays
+// over time, foamParameters = (threshold, gain, decay per second, delta time)
+float getFoam(float previous, vec4 displacement, vec4 derivatives) {
+    float jacobian = (1.0 + derivatives.z) * (1.0 + derivatives.w) - displacement.w * displacement.w;
+    float foam = previous * exp(-foamParameters.z * foamParameters.w) +
+                 max(foamParameters.x - jacobian, 0.0) * foamParameters.y * foamParameters.w;
+    return min(foam, 1.0);
+}
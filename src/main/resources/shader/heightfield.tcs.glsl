@@ -0,0 +1,67 @@
+#version 420
+
+// Quad patches of the terrain and the water, subdivided by the projected size of their edges
+
+layout(vertices = 4) out;
+
+in vec3 vs_patchPosition[];
+
+out vec3 tcs_position[];
+
+layout(std140, binding=0) uniform Camera {
+    mat4 projMatrix;
+    mat4 viewMatrix;
+} camera;
+
+// Target edge length of the subdivided triangles in pixels
+uniform float edgePixels;
+uniform vec2 viewportSize;
+// Lowest and highest height the evaluation stage moves vertices to, for culling
+uniform vec2 heightRange;
+
+const float maxLevel = 64.0;
+
+// Screen diameter of the sphere around the edge, the same for both patches sharing it
+float getLevel(vec3 a, vec3 b) {
+    float radius = distance(a, b) * 0.5;
+    float dist = max(length((camera.viewMatrix * vec4((a + b) * 0.5, 1.0)).xyz), radius);
+    float pixels = 2.0 * radius * camera.projMatrix[1][1] / dist * viewportSize.y * 0.5;
+    return clamp(pixels / edgePixels, 1.0, maxLevel);
+}
+
+bool isOutside() {
+    mat4 viewProj = camera.projMatrix * camera.viewMatrix;
+    bvec3 allBelow = bvec3(true);
+    bvec3 allAbove = bvec3(true);
+    for(int i = 0; i < 8; ++i) {
+        vec3 p = vs_patchPosition[i % 4];
+        vec4 clip = viewProj * vec4(p.x, (i < 4 ? heightRange.x : heightRange.y), p.z, 1.0);
+        allBelow = allBelow && lessThan(clip.xyz, vec3(-clip.w));
+        allAbove = allAbove && greaterThan(clip.xyz, vec3(clip.w));
+    }
+    return any(allBelow) || any(allAbove);
+}
+
+void main() {
+    tcs_position[gl_InvocationID] = vs_patchPosition[gl_InvocationID];
+
+    if(gl_InvocationID == 0) {
+        if(isOutside()) {
+            gl_TessLevelOuter[0] = 0.0;
+            gl_TessLevelOuter[1] = 0.0;
+            gl_TessLevelOuter[2] = 0.0;
+            gl_TessLevelOuter[3] = 0.0;
+            gl_TessLevelInner[0] = 0.0;
+            gl_TessLevelInner[1] = 0.0;
+            return;
+        }
+
+        // Corners (0, 0), (1, 0), (1, 1), (0, 1) in tessellation coordinates
+        gl_TessLevelOuter[0] = getLevel(vs_patchPosition[3], vs_patchPosition[0]);
+        gl_TessLevelOuter[1] = getLevel(vs_patchPosition[0], vs_patchPosition[1]);
+        gl_TessLevelOuter[2] = getLevel(vs_patchPosition[1], vs_patchPosition[2]);
+        gl_TessLevelOuter[3] = getLevel(vs_patchPosition[2], vs_patchPosition[3]);
+        gl_TessLevelInner[0] = max(gl_TessLevelOuter[1], gl_TessLevelOuter[3]);
+        gl_TessLevelInner[1] = max(gl_TessLevelOuter[0], gl_TessLevelOuter[2]);
+    }
+}
@@ -1,10 +1,11 @@
 #version 420
 
-#define SPEED 2.0
-
 in vec2 vs_texCoord;
 in vec3 vs_position;
 in vec4 vs_glPosition;
+#ifdef FFT_OCEAN
+in vec2 vs_oceanCoord;
+#endif
 
 out vec4 fs_diffuse;
 
@@ -17,59 +18,70 @@ uniform sampler2D reflectTexture;
 uniform sampler2D heightMap;
 
 uniform vec3 cameraPos;
-uniform float time;
 
-uniform sampler2D noiseTextures[4];
+#ifdef FFT_OCEAN
 
-// Octave transform matrix from Alexander Alekseev aka TDM
-mat2 octave_m = mat2(1.6,1.2,-1.2,1.6);
+const int MAX_CASCADES = 4;
 
-float noise(vec2 pos, int oct) {
-    return texture(noiseTextures[oct], pos * pow(0.5, oct)).r;
-}
+// Normals and foam of the OceanSimulation cascades, one fetch each per cascade
+uniform sampler2DArray normalMap;
+uniform sampler2DArray foamMap;
+uniform int cascades;
+uniform float sizes[MAX_CASCADES];
+uniform float oceanScale;
 
-// Modified from FractalNoise(in vec2 xy) at http://www.kevs3d.co.uk/dev/shaders/waves2.html
-float getHeight(vec2 pos) {
-    pos /= 16.0;
-    float dt = time * SPEED;
-    float m = 1.5;
-    float w = 0.5;
-    float f = 0.0;
-    for (int i = 0; i < 4; i++){
-        f += noise(pos + dt*0.0511, i) * m * 0.15;
-        f += noise(pos.yx - dt*0.0333, i) * w * 0.25;
-        w *= 0.5;
-        m *= 0.25;
-        pos *= octave_m;
+// The slopes of the cascades add up. Points down like the baked noise normal, main() shades with that
+vec3 getNormal(vec2 pos) {
+    vec2 slope = vec2(0.0);
+    for(int c = 0; c < cascades; ++c) {
+        vec3 normal = texture(normalMap, vec3(pos / (sizes[c] * oceanScale), c)).xyz;
+        slope += normal.xz / normal.y;
     }
-    return f;
+    return normalize(vec3(slope.x, -1.0, slope.y));
 }
 
-float getDist(vec3 pos) {
-   return dot(pos - vec3(0.0, -getHeight(pos.xz), 0.0), vec3(0.0, 1.0, 0.0));
+float getFoam(vec2 pos) {
+    float foam = 0.0;
+    for(int c = 0; c < cascades; ++c) {
+        foam += texture(foamMap, vec3(pos / (sizes[c] * oceanScale), c)).r;
+    }
+    return min(foam, 1.0);
 }
 
-vec3 getNormal(vec3 pos) {
-    const vec2 delta = vec2(0.05, 0.0);
-    vec3 n;
-    n.x = getDist( pos + delta.xyy ) - getDist( pos - delta.xyy );
-    n.y = getDist( pos + delta.yxy ) - getDist( pos - delta.yxy );
-    n.z = getDist( pos + delta.yyx ) - getDist( pos - delta.yyx );
+#else
 
-    return normalize(-n);
+// Normal and height baked by WaterManager for the current time
+uniform sampler2D waterMap;
+
+// Beyond the baked square the waves flatten out
+vec4 getWater(vec2 texCoord) {
+    vec2 size = vec2(textureSize(waterMap, 0));
+    vec4 water = texture(waterMap, (texCoord * (size - 1.0) + 0.5) / size);
+    vec2 outside = max(-texCoord, texCoord - 1.0);
+    return mix(water, vec4(0.0, -1.0, 0.0, 0.0), smoothstep(0.0, 0.1, max(outside.x, outside.y)));
 }
 
+#endif
+
 const vec3 skyColor = vec3(0.0, 0.8, 1.0);
 const vec3 diffuse = vec3(0.1, 0.2, 0.5);
 const float specular = 20.0;
 const vec3 lightColor = vec3(1.0, 1.0, 1.0);
 const float specularHardness = 512.0;
+const vec3 foamColor = vec3(0.9, 0.95, 1.0);
 
 void main() {
 
     vec3 lightDir = normalize(light.direction.xyz);
 
-    vec3 normal = getNormal(vs_position);
+#ifdef FFT_OCEAN
+    vec3 normal = getNormal(vs_oceanCoord);
+    float waterHeight = vs_position.y;
+#else
+    vec4 water = getWater(vs_texCoord);
+    vec3 normal = normalize(water.xyz);
+    float waterHeight = 8.0 + water.w;
+#endif
     vec3 view = normalize(cameraPos - vs_position);
 
     vec2 screenSpace = (vs_glPosition.xy / vs_glPosition.w) / 2.0 + 0.5;
@@ -91,7 +103,7 @@ void main() {
         color += vec3(spec);
     }
 
-    float waterDepth = 8.0 + getHeight(vs_position.xz) - texture(heightMap, vs_texCoord).r * 0.1 * 128.0;
+    float waterDepth = waterHeight - texture(heightMap, clamp(vs_texCoord, 0.0, 1.0)).r * 0.1 * 128.0;
 
     vec3 oceanColor = mix(vec3(0.0, 0.06, 0.1), refractColor * vec3(0.8, 0.95, 1.0), pow( 1.0 - waterDepth / 9.0, 5.0));
 
@@ -99,5 +111,11 @@ void main() {
     fresnel = mix(0.0, 1.0, min(1.0, fresnel));
     color += mix(oceanColor, reflectColor * vec3(0.8, 0.9, 1.0), fresnel);
 
+#ifdef FFT_OCEAN
+    // Half of the light on the rough foam comes from the sky, the rest follows the sun like diffuse
+    float foamLight = 0.5 + 0.5 * max(dot(normal, lightDir), 0.0);
+    color = mix(color, foamColor * foamLight, getFoam(vs_oceanCoord));
+#endif
+
     fs_diffuse = vec4(color, 1.0);
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+#version 420
+
+layout(quads, fractional_even_spacing, cw) in;
+
+in vec3 tcs_position[];
+
+out vec2 vs_texCoord;
+out vec3 vs_normal;
+out vec3 vs_position;
+
+layout(std140, binding=0) uniform Camera {
+    mat4 projMatrix;
+    mat4 viewMatrix;
+} camera;
+
+uniform sampler2D heightMap;
+uniform sampler2D normalMap;
+
+uniform vec4 clippingPlane;
+uniform float terrainSize;
+
+void main() {
+    vec2 uv = gl_TessCoord.xy;
+    vec3 position = mix(mix(tcs_position[0], tcs_position[1], uv.x), mix(tcs_position[3], tcs_position[2], uv.x), uv.y);
+
+    vs_texCoord = position.xz / terrainSize + 0.5;
+    vs_normal = normalize(texture(normalMap, vs_texCoord).rgb * 2.0 - 1.0);
+    vs_position = vec3(position.x, texture(heightMap, vs_texCoord).r * 0.1 * terrainSize, position.z);
+
+    gl_ClipDistance[0] = dot(clippingPlane, vec4(vs_position, 1.0));
+
+    gl_Position = camera.projMatrix * camera.viewMatrix * vec4(vs_position, 1.0);
+}
@@ -1,6 +1,18 @@
 #version 420
 
+#ifdef GRID_VERTEX_ID
+// No vertex buffer, vertex (x, z) of the GridMesh is x * (gridSegments.y + 1) + z
+uniform vec2 gridSegments;
+
+vec3 getGridPosition() {
+    int rowLength = int(gridSegments.y) + 1;
+    return vec3(float(gl_VertexID / rowLength) / gridSegments.x, 0.0, float(gl_VertexID % rowLength) / gridSegments.y);
+}
+
+#define in_position getGridPosition()
+#else
 layout(location=0) in vec3 in_position;
+#endif
 
 out vec2 vs_texCoord;
 out vec3 vs_normal;
@@ -16,6 +28,53 @@ uniform sampler2D normalMap;
 
 uniform vec4 clippingPlane;
 
+#ifdef TESSELLATION
+
+// Patch corners with their height, terrain.tes.glsl samples the subdivided vertices
+out vec3 vs_patchPosition;
+
+uniform float terrainSize;
+
+void main() {
+    vec2 pos = (in_position.xz - 0.5) * terrainSize;
+    vs_patchPosition = vec3(pos.x, texture(heightMap, in_position.xz).r * 0.1 * terrainSize, pos.y);
+}
+
+#elif defined(CDLOD)
+
+// Node of the TerrainQuadtree, in_position.xz spans it
+uniform vec2 nodeOffset;
+uniform float nodeSize;
+// Camera distances between which the vertices morph into the next coarser level
+uniform vec2 morphRange;
+uniform vec3 cameraPos;
+uniform float terrainSize;
+uniform float patchSegments;
+
+float getHeight(vec2 pos) {
+    return texture(heightMap, pos / terrainSize + 0.5).r * 0.1 * terrainSize;
+}
+
+void main() {
+    vec2 gridPos = in_position.xz;
+    vec2 pos = nodeOffset + gridPos * nodeSize;
+    float morph = clamp((distance(cameraPos, vec3(pos.x, getHeight(pos), pos.y)) - morphRange.x) / (morphRange.y - morphRange.x), 0.0, 1.0);
+
+    // Odd vertices slide onto the edges of the coarser grid
+    gridPos -= fract(gridPos * patchSegments * 0.5) * 2.0 / patchSegments * morph;
+    pos = nodeOffset + gridPos * nodeSize;
+
+    vs_texCoord = pos / terrainSize + 0.5;
+    vs_normal = normalize(texture(normalMap, vs_texCoord).rgb * 2.0 - 1.0);
+    vs_position = vec3(pos.x, getHeight(pos), pos.y);
+
+    gl_ClipDistance[0] = dot(clippingPlane, vec4(vs_position, 1.0));
+
+    gl_Position = camera.projMatrix * camera.viewMatrix * vec4(vs_position, 1.0);
+}
+
+#else
+
 void main() {
     vs_texCoord = in_position.xz;
 
@@ -31,3 +90,5 @@ void main() {
 
     gl_Position = camera.projMatrix * camera.viewMatrix * vec4(vs_position, 1.0);
 }
+
+#endif
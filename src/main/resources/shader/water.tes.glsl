@@ -0,0 +1,66 @@
+#version 420
+
+layout(quads, fractional_even_spacing, cw) in;
+
+in vec3 tcs_position[];
+
+out vec2 vs_texCoord;
+out vec3 vs_position;
+out vec4 vs_glPosition;
+#ifdef FFT_OCEAN
+out vec2 vs_oceanCoord;
+#endif
+
+layout(std140, binding=0) uniform Camera {
+    mat4 projMatrix;
+    mat4 viewMatrix;
+} camera;
+
+// Same displacement as water.vs.glsl
+#ifdef FFT_OCEAN
+
+const int MAX_CASCADES = 4;
+
+uniform sampler2DArray displacementMap;
+uniform int cascades;
+uniform float sizes[MAX_CASCADES];
+uniform float oceanScale;
+
+vec3 getDisplacement(vec2 pos) {
+    vec3 displacement = vec3(0.0);
+    for(int c = 0; c < cascades; ++c) {
+        displacement += texture(displacementMap, vec3(pos / (sizes[c] * oceanScale), c)).xyz;
+    }
+    return displacement * oceanScale;
+}
+
+#else
+
+uniform sampler2D waterMap;
+
+vec4 getWater(vec2 texCoord) {
+    vec2 size = vec2(textureSize(waterMap, 0));
+    vec4 water = texture(waterMap, (texCoord * (size - 1.0) + 0.5) / size);
+    vec2 outside = max(-texCoord, texCoord - 1.0);
+    return mix(water, vec4(0.0, -1.0, 0.0, 0.0), smoothstep(0.0, 0.1, max(outside.x, outside.y)));
+}
+
+#endif
+
+void main() {
+    vec2 uv = gl_TessCoord.xy;
+    vec3 position = mix(mix(tcs_position[0], tcs_position[1], uv.x), mix(tcs_position[3], tcs_position[2], uv.x), uv.y);
+    vs_texCoord = position.xz / 128.0 + 0.5;
+
+#ifdef FFT_OCEAN
+    vs_oceanCoord = position.xz;
+    position += getDisplacement(position.xz);
+#else
+    position.y += getWater(vs_texCoord).w;
+#endif
+
+    vs_position = position;
+
+    gl_Position = camera.projMatrix * camera.viewMatrix * vec4(position, 1.0);
+    vs_glPosition = gl_Position;
+}
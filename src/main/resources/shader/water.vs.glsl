@@ -1,12 +1,30 @@
 #version 420
 
-#define SPEED 2.0
+#ifdef GRID_VERTEX_ID
+// No vertex buffer, vertex (x, z) of the GridMesh is x * (gridSegments.y + 1) + z
+uniform vec2 gridSegments;
 
+vec3 getGridPosition() {
+    int rowLength = int(gridSegments.y) + 1;
+    return vec3(float(gl_VertexID / rowLength) / gridSegments.x, 0.0, float(gl_VertexID % rowLength) / gridSegments.y);
+}
+
+#define in_position getGridPosition()
+#else
 layout(location=0) in vec3 in_position;
+#endif
 
+#ifdef TESSELLATION
+// Patch corners on the water plane, water.tes.glsl displaces the subdivided vertices
+out vec3 vs_patchPosition;
+#else
 out vec2 vs_texCoord;
 out vec3 vs_position;
 out vec4 vs_glPosition;
+#ifdef FFT_OCEAN
+out vec2 vs_oceanCoord;
+#endif
+#endif
 
 layout(std140, binding=0) uniform Camera {
     mat4 projMatrix;
@@ -15,46 +33,75 @@ layout(std140, binding=0) uniform Camera {
 
 const float waterLevel = 8.0;
 
-uniform float time;
-
-uniform sampler2D noiseTextures[4];
+#ifdef PROJECTED_GRID
+// Homogeneous water plane points of the grid corners, see ProjectedGrid
+uniform vec4 gridCorners[4];
+#elif defined(CLIPMAP)
+// Level of the GeometryClipmap, in_position.xz are its cells
+uniform vec2 levelOrigin;
+uniform float levelSpacing;
+// Cells from the camera over which odd vertices collapse onto the coarser level
+uniform float morphStart;
+uniform float morphWidth;
+uniform vec3 cameraPos;
+#endif
+
+#ifdef FFT_OCEAN
+
+const int MAX_CASCADES = 4;
+
+// (Dx, h, Dz) of the OceanSimulation cascades, one fetch per cascade
+uniform sampler2DArray displacementMap;
+uniform int cascades;
+uniform float sizes[MAX_CASCADES];
+// World units per meter of the simulation
+uniform float oceanScale;
+
+vec3 getDisplacement(vec2 pos) {
+    vec3 displacement = vec3(0.0);
+    for(int c = 0; c < cascades; ++c) {
+        displacement += texture(displacementMap, vec3(pos / (sizes[c] * oceanScale), c)).xyz;
+    }
+    return displacement * oceanScale;
+}
 
-//float getHeight(vec2 pos) {
-//    float dt = time * 0.05 * SPEED;
-//    float val = 0.0;
-//    val += texture(noiseTextures[0], vec2(0.5, 1.0) * pos * 0.05 + vec2(dt, 0.0)).r * 0.8;
-//    val += texture(noiseTextures[1], vec2(1.0, 0.5) * pos * 0.1 + vec2(0.0, dt)).r * 0.14;
-//    val += (1.0 - abs(texture(noiseTextures[2], pos * 0.1 + vec2(dt, dt)).r * 2.0 - 1.0)) * 0.04;
-//    val += (1.0 - abs(texture(noiseTextures[3], pos * 0.1 + vec2(-dt, -dt)).r * 2.0 - 1.0)) * 0.02;
-//    return val;
-//}
+#else
 
-// Octave transform matrix from Alexander Alekseev aka TDM
-mat2 octave_m = mat2(1.6,1.2,-1.2,1.6);
+// Normal and height baked by WaterManager for the current time
+uniform sampler2D waterMap;
 
-float noise(vec2 pos, int oct) {
-    return texture(noiseTextures[oct], pos * pow(0.5, oct)).r;
+// Beyond the baked square the waves flatten out
+vec4 getWater(vec2 texCoord) {
+    vec2 size = vec2(textureSize(waterMap, 0));
+    vec4 water = texture(waterMap, (texCoord * (size - 1.0) + 0.5) / size);
+    vec2 outside = max(-texCoord, texCoord - 1.0);
+    return mix(water, vec4(0.0, -1.0, 0.0, 0.0), smoothstep(0.0, 0.1, max(outside.x, outside.y)));
 }
 
-// Modified from FractalNoise(in vec2 xy) at http://www.kevs3d.co.uk/dev/shaders/waves2.html
-float getHeight(vec2 pos) {
-    pos /= 16.0;
-    float dt = time * SPEED;
-    float m = 1.5;
-    float w = 0.5;
-    float f = 0.0;
-    for (int i = 0; i < 4; i++){
-        f += noise(pos + dt*0.0511, i) * m * 0.15;
-        f += noise(pos.yx - dt*0.0333, i) * w * 0.25;
-        w *= 0.5;
-        m *= 0.25;
-        pos *= octave_m;
-    }
-    return f;
+#endif
+
+#ifdef TESSELLATION
+
+void main() {
+    vs_patchPosition = vec3((in_position.x - 0.5) * 128.0, waterLevel, (in_position.z - 0.5) * 128.0);
 }
 
+#else
+
 void main() {
 
+#ifdef PROJECTED_GRID
+    vec4 corner = mix(mix(gridCorners[0], gridCorners[1], in_position.x), mix(gridCorners[2], gridCorners[3], in_position.x), in_position.z);
+    vec3 position = corner.xyz / corner.w;
+    vs_texCoord = position.xz / 128.0 + 0.5;
+#elif defined(CLIPMAP)
+    vec2 cell = in_position.xz;
+    vec2 distance = abs(levelOrigin + cell * levelSpacing - cameraPos.xz) / levelSpacing;
+    float morph = clamp((max(distance.x, distance.y) - morphStart) / morphWidth, 0.0, 1.0);
+    cell -= fract(cell * 0.5) * 2.0 * morph;
+    vec3 position = vec3(levelOrigin.x + cell.x * levelSpacing, waterLevel, levelOrigin.y + cell.y * levelSpacing);
+    vs_texCoord = position.xz / 128.0 + 0.5;
+#else
     vs_texCoord = in_position.xz;
 
     vec3 position = in_position;
@@ -62,11 +109,19 @@ void main() {
     position.z -= 0.5;
     position *= 128.0;
     position.y += waterLevel;
+#endif
 
-    position.y += getHeight(position.xz);
+#ifdef FFT_OCEAN
+    vs_oceanCoord = position.xz;
+    position += getDisplacement(position.xz);
+#else
+    position.y += getWater(vs_texCoord).w;
+#endif
 
     vs_position = position;
 
     gl_Position = camera.projMatrix * camera.viewMatrix * vec4(position, 1.0);
     vs_glPosition = gl_Position;
-}
\ No newline at end of file
+}
+
+#endif
@@ -0,0 +1,71 @@
+#version 420
+
+#define SPEED 2.0
+
+in vec2 vs_position;
+
+// Normal in xyz, height above the water level in w
+out vec4 fs_water;
+
+uniform sampler2D noiseTextures[4];
+uniform float time;
+// Texels per side of the target
+uniform float resolution;
+
+// World size of the water grid, see water.vs.glsl
+const float waterSize = 128.0;
+
+// Octave transform matrix from Alexander Alekseev aka TDM
+mat2 octave_m = mat2(1.6,1.2,-1.2,1.6);
+
+// Same value as texture() with a linear wrapping sampler, plus the gradient along pos
+vec3 noise(vec2 pos, int oct) {
+    ivec2 size = textureSize(noiseTextures[oct], 0);
+    float scale = pow(0.5, oct);
+    vec2 t = mod(pos * scale * vec2(size) - 0.5, vec2(size));
+    ivec2 i0 = ivec2(floor(t));
+    ivec2 i1 = (i0 + 1) % size;
+    vec2 f = t - vec2(i0);
+
+    float a = texelFetch(noiseTextures[oct], i0, 0).r;
+    float b = texelFetch(noiseTextures[oct], ivec2(i1.x, i0.y), 0).r;
+    float c = texelFetch(noiseTextures[oct], ivec2(i0.x, i1.y), 0).r;
+    float d = texelFetch(noiseTextures[oct], i1, 0).r;
+
+    float value = mix(mix(a, b, f.x), mix(c, d, f.x), f.y);
+    vec2 gradient = vec2(mix(b - a, d - c, f.y), mix(c - a, d - b, f.x));
+    return vec3(value, gradient * scale * vec2(size));
+}
+
+// Modified from FractalNoise(in vec2 xy) at http://www.kevs3d.co.uk/dev/shaders/waves2.html
+// Returns the height and its derivatives along x and z
+vec3 getHeight(vec2 pos) {
+    pos /= 16.0;
+    vec2 posX = vec2(1.0 / 16.0, 0.0);
+    vec2 posZ = vec2(0.0, 1.0 / 16.0);
+    float dt = time * SPEED;
+    float m = 1.5;
+    float w = 0.5;
+    vec3 f = vec3(0.0);
+    for (int i = 0; i < 4; i++){
+        vec3 n = noise(pos + dt*0.0511, i);
+        f += vec3(n.x, dot(n.yz, posX), dot(n.yz, posZ)) * m * 0.15;
+        n = noise(pos.yx - dt*0.0333, i);
+        f += vec3(n.x, dot(n.yz, posX.yx), dot(n.yz, posZ.yx)) * w * 0.25;
+        w *= 0.5;
+        m *= 0.25;
+        pos *= octave_m;
+        posX *= octave_m;
+        posZ *= octave_m;
+    }
+    return f;
+}
+
+void main() {
+    // The first and last texel centers lie on the edges of the grid
+    vec2 texCoord = (vs_position * resolution - 0.5) / (resolution - 1.0);
+    vec3 height = getHeight((texCoord - 0.5) * waterSize);
+
+    // Oriented like the finite differences of getDist() this replaces
+    fs_water = vec4(normalize(vec3(-height.y, -1.0, -height.z)), height.x);
+}